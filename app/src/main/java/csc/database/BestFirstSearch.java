@@ -0,0 +1,192 @@
+package csc.database;
+
+import csc.interfaces.DepartureSource;
+import csc.travel.Itinerary;
+import csc.travel.ItineraryPrefix;
+import csc.travel.SingleTravel;
+import csc.travel.TravelComparator;
+import csc.util.Constants;
+import csc.util.Locations;
+import csc.util.TimeFormat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Searches for the best itineraries in the order of a TravelComparator. Partial
+ * itineraries are expanded best first, so the search stops as soon as enough
+ * itineraries are known to be better than anything left to explore.
+ */
+public class BestFirstSearch {
+  /**
+   * The index to search the travels of.
+   */
+  private final DepartureSource<SingleTravel> index;
+  /**
+   * The locations that can reach each destination.
+   */
+  private final Reachability reachability;
+  /**
+   * The amount of nodes created in the current search.
+   */
+  private long count;
+
+  /**
+   * Creates a search over the travels of an index.
+   *
+   * @param index
+   *          the index to search
+   * @param reachability
+   *          the locations that can reach each destination in index
+   */
+  public BestFirstSearch(DepartureSource<SingleTravel> index, Reachability reachability) {
+    this.index = index;
+    this.reachability = reachability;
+  }
+
+  /**
+   * Finds the first itineraries, in the order specified, that depart from
+   * origin on the given date and arrive at destination.
+   *
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param order
+   *          the order to find the itineraries in
+   * @param limit
+   *          the maximum amount of itineraries to find
+   * @param limits
+   *          the limits of the search
+   * @return a list of at most limit itineraries, in order
+   */
+  public ArrayList<Itinerary> search(Date date, String origin, String destination,
+      TravelComparator order, int limit, SearchLimits limits) {
+    ArrayList<Itinerary> ret = new ArrayList<>(Math.min(limit, 16));
+    int target = Locations.findId(destination);
+    if (target < 0) { // no travel arrives there
+      return ret;
+    }
+    PriorityQueue<Node> queue = new PriorityQueue<>(16, new NodeComparator());
+    Reachability.Table reach = reachability.get(destination);
+    count = 0;
+
+    expand(queue, null, index.find(origin, date.getTime(), TimeFormat.endOfDay(date)),
+        target, order, reach);
+
+    while (ret.size() < limit && !queue.isEmpty()) {
+      Node node = queue.poll();
+      if (node.complete) {
+        // nothing left can be better than this
+        ret.add(node.itin.toItinerary());
+      } else if (limits.allowsLegs(node.itin.size() + 1)) {
+        if (!limits.expand()) {
+          break;
+        }
+        long arrival = node.itin.getEndMillis();
+        expand(queue, node.itin, index.find(node.itin.getDestinationId(),
+            arrival + Constants.MIN_STOPOVER, arrival + Constants.MAX_STOPOVER),
+            target, order, reach);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Adds every continuation of an itinerary to the queue.
+   *
+   * @param queue
+   *          the queue to add to
+   * @param itin
+   *          the itinerary to continue; null if it is empty
+   * @param found
+   *          the groups of travels departing within the stopover after itin
+   * @param destination
+   *          the id of the location to end the sequence
+   * @param order
+   *          the order to expand the itineraries in
+   * @param reach
+   *          the locations that can reach destination
+   */
+  private void expand(PriorityQueue<Node> queue, ItineraryPrefix itin,
+      Collection<List<SingleTravel>> found, int destination, TravelComparator order,
+      Reachability.Table reach) {
+    for (List<SingleTravel> same : found) {
+      for (SingleTravel st : same) {
+        // if we haven't visited this location, and can still reach the end...
+        if (st.getAvailableCapacity() > 0
+            && (itin == null || !itin.containsOrigin(st.getDestinationId()))
+            && reach.canContinue(st)) {
+          ItineraryPrefix next = new ItineraryPrefix(st, itin);
+          queue.add(new Node(next, order.getKey(next),
+              st.getDestinationId() == destination, count++));
+        }
+      }
+    }
+  }
+
+  /**
+   * An itinerary waiting to be expanded or returned.
+   */
+  private static class Node {
+    /**
+     * The itinerary of this node.
+     */
+    private final ItineraryPrefix itin;
+    /**
+     * The lower bound of every itinerary starting with itin.
+     */
+    private final double key;
+    /**
+     * Whether itin arrives at the destination.
+     */
+    private final boolean complete;
+    /**
+     * The order this node was created in.
+     */
+    private final long sequence;
+
+    /**
+     * Creates a node.
+     *
+     * @param itin
+     *          the itinerary of this node
+     * @param key
+     *          the lower bound of every itinerary starting with itin
+     * @param complete
+     *          whether itin arrives at the destination
+     * @param sequence
+     *          the order this node was created in
+     */
+    private Node(ItineraryPrefix itin, double key, boolean complete, long sequence) {
+      this.itin = itin;
+      this.key = key;
+      this.complete = complete;
+      this.sequence = sequence;
+    }
+  }
+
+  /**
+   * Orders nodes by their lower bound. Complete itineraries come before partial
+   * ones of the same bound, since they cannot be improved on.
+   */
+  private static class NodeComparator implements Comparator<Node> {
+    @Override
+    public int compare(Node lhs, Node rhs) {
+      int ret = Double.compare(lhs.key, rhs.key);
+      if (ret == 0) {
+        ret = Boolean.compare(rhs.complete, lhs.complete);
+      }
+      if (ret == 0) {
+        ret = Long.compare(lhs.sequence, rhs.sequence);
+      }
+      return ret;
+    }
+  }
+}
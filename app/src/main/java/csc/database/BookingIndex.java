@@ -0,0 +1,197 @@
+package csc.database;
+
+import csc.interfaces.BookingListener;
+import csc.travel.Itinerary;
+import csc.travel.SingleTravel;
+import csc.travel.TravelType;
+import csc.users.RegisteredUser;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the booked itineraries that contain each travel, so that the
+ * bookings of a changed travel can be found without checking every user. Users
+ * keep it up to date by telling it whenever they book an itinerary or stop
+ * booking it, which they may do from multiple threads at once. Each booking
+ * is then passed on to the listener of the database, if it has one.
+ */
+class BookingIndex implements BookingListener<RegisteredUser, Itinerary> {
+  /**
+   * The bookings of each travel, by the type and then the id of the travel.
+   */
+  private final Map<TravelType, Map<String, List<Booking>>> bookings;
+  /**
+   * The object to tell of each booking after indexing it; null if there is
+   * none.
+   */
+  private BookingListener<RegisteredUser, Itinerary> listener;
+
+  /**
+   * Creates an index without any bookings.
+   */
+  BookingIndex() {
+    this.bookings = new EnumMap<>(TravelType.class);
+    for (TravelType tt : TravelType.values()) {
+      bookings.put(tt, new HashMap<String, List<Booking>>());
+    }
+  }
+
+  /**
+   * Sets the object to tell of each booking after indexing it.
+   *
+   * @param listener
+   *          the listener to set; null to not tell anyone
+   */
+  synchronized void setListener(BookingListener<RegisteredUser, Itinerary> listener) {
+    this.listener = listener;
+  }
+
+  @Override
+  public synchronized void booked(RegisteredUser user, Itinerary itinerary) {
+    index(user, itinerary);
+    if (listener != null) {
+      listener.booked(user, itinerary);
+    }
+  }
+
+  /**
+   * Indexes an itinerary booked by a user.
+   *
+   * @param user
+   *          the user who booked
+   * @param itinerary
+   *          the itinerary booked
+   */
+  private void index(RegisteredUser user, Itinerary itinerary) {
+    Booking booking = new Booking(user, itinerary);
+    for (SingleTravel travel : itinerary.getTravels()) {
+      Map<String, List<Booking>> ids = bookings.get(travel.getType());
+      List<Booking> same = ids.get(travel.getIdentifier());
+      if (same == null) {
+        // most travels are only booked by a few users
+        same = new ArrayList<>(2);
+        ids.put(travel.getIdentifier(), same);
+      }
+      same.add(booking);
+    }
+  }
+
+  @Override
+  public synchronized void unbooked(RegisteredUser user, Itinerary itinerary) {
+    for (SingleTravel travel : itinerary.getTravels()) {
+      Map<String, List<Booking>> ids = bookings.get(travel.getType());
+      List<Booking> same = ids.get(travel.getIdentifier());
+      if (same == null) {
+        continue;
+      }
+      Iterator<Booking> iter = same.iterator();
+      while (iter.hasNext()) {
+        Booking booking = iter.next();
+        if (booking.user == user && booking.itinerary == itinerary) {
+          iter.remove();
+          break;
+        }
+      }
+      if (same.isEmpty()) {
+        ids.remove(travel.getIdentifier());
+      }
+    }
+    if (listener != null) {
+      listener.unbooked(user, itinerary);
+    }
+  }
+
+  /**
+   * Indexes the itineraries a user has already booked.
+   *
+   * @param user
+   *          the user to index
+   */
+  synchronized void addUser(RegisteredUser user) {
+    // they were already booked, so nobody is told again
+    for (Itinerary it : user.getBookedItineraries()) {
+      index(user, it);
+    }
+  }
+
+  /**
+   * Cancels every booked itinerary that contains a travel.
+   *
+   * @param travel
+   *          the travel whose bookings are cancelled
+   */
+  void cancel(SingleTravel travel) {
+    List<Booking> cancelled;
+    synchronized (this) {
+      List<Booking> same = bookings.get(travel.getType()).get(travel.getIdentifier());
+      if (same == null) {
+        return;
+      }
+      cancelled = new ArrayList<>(same);
+    }
+    // a booking user holds its own lock while telling this index, so users are
+    // only called once this index is unlocked; each removal unindexes itself
+    for (Booking booking : cancelled) {
+      booking.user.removeItinerary(booking.itinerary);
+    }
+  }
+
+  /**
+   * Moves the bookings of a travel to the new id of the travel.
+   *
+   * @param type
+   *          the type of the travel
+   * @param oldId
+   *          the id the travel had
+   * @param newId
+   *          the id the travel has now
+   */
+  synchronized void changeId(TravelType type, String oldId, String newId) {
+    Map<String, List<Booking>> ids = bookings.get(type);
+    List<Booking> same = ids.remove(oldId);
+    if (same != null) {
+      ids.put(newId, same);
+    }
+  }
+
+  /**
+   * Removes every booking from this index.
+   */
+  synchronized void clear() {
+    for (Map<String, List<Booking>> ids : bookings.values()) {
+      ids.clear();
+    }
+  }
+
+  /**
+   * An itinerary booked by a user.
+   */
+  private static class Booking {
+    /**
+     * The user who booked.
+     */
+    private final RegisteredUser user;
+    /**
+     * The itinerary booked.
+     */
+    private final Itinerary itinerary;
+
+    /**
+     * Creates a booking.
+     *
+     * @param user
+     *          the user who booked
+     * @param itinerary
+     *          the itinerary booked
+     */
+    private Booking(RegisteredUser user, Itinerary itinerary) {
+      this.user = user;
+      this.itinerary = itinerary;
+    }
+  }
+}
@@ -0,0 +1,306 @@
+package csc.database;
+
+import csc.interfaces.DepartureSource;
+import csc.travel.Itinerary;
+import csc.travel.ItineraryPrefix;
+import csc.travel.SingleTravel;
+import csc.util.Constants;
+import csc.util.Locations;
+import csc.util.TimeFormat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Searches for itineraries by scanning every travel once, in order of
+ * departure. Each travel that can be reached from the origin is labelled with
+ * the sequences of travels ending with it, so the earliest arriving and the
+ * cheapest itineraries are found without exploring every path. Unlike the depth
+ * first engines, it finds at most these two itineraries.
+ *
+ * <p>A sequence arriving at a location is only dropped for another arriving
+ * there at the same time that is at least as cheap, has at most as many
+ * travels, and visited no location the dropped one did not. Every travel that
+ * could continue the dropped sequence can then continue the kept one, so the
+ * itineraries found are the earliest arriving and the cheapest of all.
+ */
+public class ConnectionScan {
+  /**
+   * The index to scan the travels of.
+   */
+  private final DepartureSource<SingleTravel> index;
+
+  /**
+   * The earliest arriving label found at the destination.
+   */
+  private ItineraryPrefix earliest;
+  /**
+   * The cheapest label found at the destination.
+   */
+  private ItineraryPrefix cheapest;
+
+  /**
+   * Creates a scan over the travels of an index.
+   *
+   * @param index
+   *          the index to scan
+   */
+  public ConnectionScan(DepartureSource<SingleTravel> index) {
+    this.index = index;
+  }
+
+  /**
+   * Finds the earliest arriving and the cheapest itineraries that depart from
+   * origin on the given date and arrive at destination.
+   *
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param limits
+   *          the limits of the search
+   * @return a list of at most two itineraries: the earliest arriving one
+   *         followed by the cheapest, if it is a different one; empty if none
+   *         was found
+   */
+  public ArrayList<Itinerary> search(Date date, String origin, String destination,
+      SearchLimits limits) {
+    scan(date, origin, destination, limits);
+
+    ArrayList<Itinerary> ret = new ArrayList<>(2);
+    Itinerary first = toItinerary(earliest);
+    if (first != null) {
+      ret.add(first);
+    }
+    Itinerary second = toItinerary(cheapest);
+    if (second != null && !second.equals(first)) {
+      ret.add(second);
+    }
+    return ret;
+  }
+
+  /**
+   * Finds the earliest arriving itinerary that departs from origin on the given
+   * date and arrives at destination.
+   *
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param limits
+   *          the limits of the search
+   * @return the earliest arriving itinerary; null if none was found
+   */
+  public Itinerary earliestArrival(Date date, String origin, String destination,
+      SearchLimits limits) {
+    scan(date, origin, destination, limits);
+    return toItinerary(earliest);
+  }
+
+  /**
+   * Finds the cheapest itinerary that departs from origin on the given date
+   * and arrives at destination.
+   *
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param limits
+   *          the limits of the search
+   * @return the cheapest itinerary; null if none was found
+   */
+  public Itinerary cheapestArrival(Date date, String origin, String destination,
+      SearchLimits limits) {
+    scan(date, origin, destination, limits);
+    return toItinerary(cheapest);
+  }
+
+  /**
+   * Scans the travels departing on or after the given date, and records the
+   * best labels found at the destination, until a limit is reached.
+   *
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param limits
+   *          the limits of the search
+   */
+  private void scan(Date date, String origin, String destination, SearchLimits limits) {
+    earliest = null;
+    cheapest = null;
+    // -1 if never seen, which no travel matches
+    int start = Locations.findId(origin);
+    int target = Locations.findId(destination);
+
+    // the labels arriving at each location, by the id of the location, keyed
+    // by arrival time
+    Map<Integer, NavigableMap<Long, List<ItineraryPrefix>>> arrivals = new HashMap<>();
+    long lastFirst = TimeFormat.endOfDay(date);
+    // no travel departing after this can continue any label
+    long frontier = lastFirst;
+
+    for (List<SingleTravel> same : index.findAll(date.getTime())) {
+      if (same.get(0).getStartMillis() > frontier) {
+        break;
+      }
+      for (SingleTravel st : same) {
+        if (st.getAvailableCapacity() <= 0) {
+          continue;
+        }
+        List<ItineraryPrefix> labels;
+        if (st.getOriginId() == start) {
+          // a travel from the origin may only start an itinerary
+          labels = st.getStartMillis() <= lastFirst
+              ? Collections.singletonList(new ItineraryPrefix(st, null))
+              : Collections.<ItineraryPrefix> emptyList();
+        } else {
+          labels = continuations(arrivals.get(st.getOriginId()), st, limits);
+        }
+        if (labels.isEmpty()) {
+          continue;
+        }
+        if (!limits.expand()) {
+          return;
+        }
+        long arrival = st.getEndMillis();
+        if (st.getDestinationId() == target) {
+          // an itinerary ends as soon as it reaches the destination
+          for (ItineraryPrefix label : labels) {
+            if (earliest == null || arrival < earliest.getEndMillis()
+                || arrival == earliest.getEndMillis()
+                    && label.getCost() < earliest.getCost()) {
+              earliest = label;
+            }
+            if (cheapest == null || label.getCost() < cheapest.getCost()
+                || label.getCost() == cheapest.getCost()
+                    && arrival < cheapest.getEndMillis()) {
+              cheapest = label;
+            }
+          }
+        } else {
+          boolean kept = false;
+          for (ItineraryPrefix label : labels) {
+            kept |= arrive(arrivals, label);
+          }
+          if (kept) {
+            frontier = Math.max(frontier, arrival + Constants.MAX_STOPOVER);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Continues every label that a travel can continue from with it.
+   *
+   * @param arrived
+   *          the labels arriving at the origin of st, keyed by arrival time
+   * @param st
+   *          the travel to continue with
+   * @param limits
+   *          the limits of the search
+   * @return the labels ending with st; empty if no label can continue with st
+   */
+  private static List<ItineraryPrefix> continuations(
+      NavigableMap<Long, List<ItineraryPrefix>> arrived, SingleTravel st, SearchLimits limits) {
+    if (arrived == null) {
+      return Collections.emptyList();
+    }
+    long departure = st.getStartMillis();
+    List<ItineraryPrefix> ret = new ArrayList<>();
+    for (List<ItineraryPrefix> same : arrived.subMap(departure - Constants.MAX_STOPOVER, true,
+        departure - Constants.MIN_STOPOVER, true).values()) {
+      for (ItineraryPrefix previous : same) {
+        if (limits.allowsLegs(previous.size() + 1)
+            && !previous.containsOrigin(st.getDestinationId())) {
+          ret.add(new ItineraryPrefix(st, previous));
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Records a label at the location it arrives at, unless a label arriving
+   * there at the same time is at least as good, and drops the labels that it
+   * is at least as good as.
+   *
+   * @param arrivals
+   *          the labels arriving at each location
+   * @param label
+   *          the label to record
+   * @return True if the label was recorded
+   */
+  private static boolean arrive(
+      Map<Integer, NavigableMap<Long, List<ItineraryPrefix>>> arrivals, ItineraryPrefix label) {
+    int location = label.getDestinationId();
+    NavigableMap<Long, List<ItineraryPrefix>> arrived = arrivals.get(location);
+    if (arrived == null) {
+      arrived = new TreeMap<>();
+      arrivals.put(location, arrived);
+    }
+    Long arrival = label.getEndMillis();
+    List<ItineraryPrefix> same = arrived.get(arrival);
+    if (same == null) {
+      same = new ArrayList<>(2);
+      arrived.put(arrival, same);
+    }
+    for (ItineraryPrefix old : same) {
+      if (isAsGood(old, label)) {
+        return false;
+      }
+    }
+    Iterator<ItineraryPrefix> iter = same.iterator();
+    while (iter.hasNext()) {
+      if (isAsGood(label, iter.next())) {
+        iter.remove();
+      }
+    }
+    same.add(label);
+    return true;
+  }
+
+  /**
+   * Gets whether a label arriving at a location can replace another arriving
+   * there at the same time: any travel continuing other can continue label,
+   * and the result is as cheap and within the same limits.
+   *
+   * @param label
+   *          the label to check
+   * @param other
+   *          the label to check against
+   * @return True if label is at least as cheap as other, has at most as many
+   *         travels, and visited no location that other did not
+   */
+  private static boolean isAsGood(ItineraryPrefix label, ItineraryPrefix other) {
+    return label.getCost() <= other.getCost() && label.size() <= other.size()
+        && label.visitsWithin(other);
+  }
+
+  /**
+   * Converts a label to an itinerary.
+   *
+   * @param label
+   *          the label to convert
+   * @return an itinerary of the travels of the label; null if label is null
+   */
+  private static Itinerary toItinerary(ItineraryPrefix label) {
+    return label == null ? null : label.toItinerary();
+  }
+}
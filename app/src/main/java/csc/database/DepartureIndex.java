@@ -0,0 +1,660 @@
+package csc.database;
+
+import csc.interfaces.DepartureSource;
+import csc.travel.SingleTravel;
+import csc.util.Locations;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An index of the travels originating from and arriving at each location. The
+ * travels of each location are ordered by their departure time, so that the
+ * departures within a time range can be found without checking every travel
+ * of that location.
+ *
+ * <p>An index can be published, after which it never changes, so it can be read
+ * from multiple threads at once. A new version is then made from it copy on
+ * write: it shares every collection of the published one, and only copies the
+ * ones it changes. Departures are kept in buckets of a few hours, and the
+ * departures of each location in buckets of a few locations, so that a change
+ * copies the buckets it is in and the lists of buckets above them, rather than
+ * every departure of a location or of the timeline.
+ */
+public class DepartureIndex implements Serializable, DepartureSource<SingleTravel> {
+  /**
+   * Serializable implementation.
+   */
+  private static final long serialVersionUID = -3518205566418734622L;
+
+  /**
+   * The amount of locations in each bucket of origins or destinations.
+   */
+  private static final int LOCATIONS_PER_BUCKET = 64;
+  /**
+   * The amount of low bits of a departure time in milliseconds that are
+   * dropped to get its bucket in a timeline, so a bucket spans about 19 hours.
+   * Unlike days, these buckets are in the same order as their times.
+   */
+  private static final int TIMELINE_SHIFT = 26;
+
+  /**
+   * The travels originating from each location, by the id of the location;
+   * null where there are none. Locations are in buckets of LOCATIONS_PER_BUCKET
+   * ids, null where none of them have travels. Ids are not saved, so this is
+   * rebuilt from the timeline when read.
+   */
+  private transient ArrayList<ArrayList<Timeline>> origins;
+  /**
+   * The travels arriving at each location, by the id of the location, like
+   * origins.
+   */
+  private transient ArrayList<ArrayList<Timeline>> destinations;
+  /**
+   * All travels from every location.
+   */
+  private Timeline timeline;
+  /**
+   * The collections of this index that are not shared with a published one,
+   * so they can be changed in place; null once this index is published.
+   */
+  private transient Set<Object> owned;
+
+  /**
+   * Creates a new empty index.
+   */
+  public DepartureIndex() {
+    this.origins = new ArrayList<>();
+    this.destinations = new ArrayList<>();
+    this.timeline = new Timeline();
+    this.owned = newOwned();
+    owned.add(origins);
+    owned.add(destinations);
+    owned.add(timeline);
+  }
+
+  /**
+   * Creates the next version of an index, with the same travels. The index is
+   * published, so that the collections this one shares with it never change.
+   *
+   * @param base
+   *          the index to start from
+   */
+  DepartureIndex(DepartureIndex base) {
+    base.publish();
+    this.origins = base.origins;
+    this.destinations = base.destinations;
+    this.timeline = base.timeline;
+    this.owned = newOwned();
+  }
+
+  /**
+   * Publishes this index, after which it can no longer be changed.
+   */
+  void publish() {
+    owned = null;
+  }
+
+  /**
+   * Indexes a travel by its origin, destination and departure time.
+   *
+   * @param travel
+   *          the travel to index
+   */
+  public void add(SingleTravel travel) {
+    checkWritable();
+    Long time = travel.getStartMillis();
+    addLocations(travel, time);
+    addDeparture(ownBucket(ownTimeline(), time), time, travel);
+  }
+
+  /**
+   * Indexes many travels at once, in order of departure, so that each
+   * collection of departures is only added to in ascending order. Travels
+   * sharing a departure time are kept in the order given, as if each had been
+   * added in turn.
+   *
+   * @param travels
+   *          the travels to index
+   */
+  public void addAll(Collection<SingleTravel> travels) {
+    checkWritable();
+    List<SingleTravel> sorted = new ArrayList<>(travels);
+    // the sort is stable, so equal departure times keep their order
+    Collections.sort(sorted, new Comparator<SingleTravel>() {
+      @Override
+      public int compare(SingleTravel lhs, SingleTravel rhs) {
+        long left = lhs.getStartMillis();
+        long right = rhs.getStartMillis();
+        return left < right ? -1 : left == right ? 0 : 1;
+      }
+    });
+    for (SingleTravel travel : sorted) {
+      add(travel);
+    }
+  }
+
+  /**
+   * Indexes a travel by its origin and destination, but not in the timeline.
+   *
+   * @param travel
+   *          the travel to index
+   * @param time
+   *          the departure time of travel
+   */
+  private void addLocations(SingleTravel travel, Long time) {
+    origins = ownList(origins);
+    addDeparture(ownBucket(ownLocation(origins, travel.getOriginId()), time), time, travel);
+    destinations = ownList(destinations);
+    addDeparture(ownBucket(ownLocation(destinations, travel.getDestinationId()), time), time,
+        travel);
+  }
+
+  /**
+   * Adds a travel to a collection of departures.
+   *
+   * @param departures
+   *          the departures to add to, which this index owns
+   * @param time
+   *          the departure time of travel
+   * @param travel
+   *          the travel to add
+   */
+  private void addDeparture(NavigableMap<Long, List<SingleTravel>> departures, Long time,
+      SingleTravel travel) {
+    List<SingleTravel> same = departures.get(time);
+    if (same == null) {
+      // most departures do not share their exact time with another
+      same = new ArrayList<>(1);
+      owned.add(same);
+      departures.put(time, same);
+    } else {
+      same = ownDepartures(departures, time, same);
+    }
+    same.add(travel);
+  }
+
+  /**
+   * Removes the index of a travel. The travel must not have changed its
+   * origin, destination or departure time since it was indexed.
+   *
+   * @param travel
+   *          the travel to remove
+   */
+  public void remove(SingleTravel travel) {
+    checkWritable();
+    int origin = travel.getOriginId();
+    Timeline departures = getLocation(origins, origin);
+    Long time = travel.getStartMillis();
+    NavigableMap<Long, List<SingleTravel>> bucket =
+        departures == null ? null : departures.get(time >> TIMELINE_SHIFT);
+    List<SingleTravel> same = bucket == null ? null : bucket.get(time);
+    if (same == null || !same.contains(travel)) {
+      return;
+    }
+    origins = ownList(origins);
+    removeLocation(origins, origin, time, travel);
+    destinations = ownList(destinations);
+    removeLocation(destinations, travel.getDestinationId(), time, travel);
+    removeDeparture(ownTimeline(), time, travel);
+  }
+
+  /**
+   * Removes a travel from the departures of a location, and removes them if
+   * they are then empty.
+   *
+   * @param locations
+   *          the departures of each location, which this index owns
+   * @param location
+   *          the id of the location
+   * @param time
+   *          the departure time of travel
+   * @param travel
+   *          the travel to remove
+   */
+  private void removeLocation(ArrayList<ArrayList<Timeline>> locations, int location, Long time,
+      SingleTravel travel) {
+    Timeline departures = ownLocation(locations, location);
+    removeDeparture(departures, time, travel);
+    if (departures.isEmpty()) { // remove it altogether
+      ownLocations(locations, location).set(location % LOCATIONS_PER_BUCKET, null);
+    }
+  }
+
+  /**
+   * Removes a travel from a timeline, and removes its bucket if it is then
+   * empty.
+   *
+   * @param departures
+   *          the timeline to remove from, which this index owns
+   * @param time
+   *          the departure time of travel
+   * @param travel
+   *          the travel to remove
+   */
+  private void removeDeparture(Timeline departures, Long time, SingleTravel travel) {
+    NavigableMap<Long, List<SingleTravel>> bucket = ownBucket(departures, time);
+    List<SingleTravel> same = bucket.get(time);
+    if (same != null) {
+      same = ownDepartures(bucket, time, same);
+      same.remove(travel);
+      if (same.isEmpty()) {
+        bucket.remove(time);
+      }
+    }
+    if (bucket.isEmpty()) {
+      departures.remove(time >> TIMELINE_SHIFT);
+    }
+  }
+
+  /**
+   * Gets a list of buckets so that it can be changed, copying it if it is
+   * shared with a published index.
+   *
+   * @param <T>
+   *          the type of the buckets
+   * @param list
+   *          the list to change
+   * @return list, or a copy of it, owned by this index
+   */
+  private <T> ArrayList<T> ownList(ArrayList<T> list) {
+    if (owned.contains(list)) {
+      return list;
+    }
+    ArrayList<T> copy = new ArrayList<>(list);
+    owned.add(copy);
+    return copy;
+  }
+
+  /**
+   * Gets the departures of a location so that they can be changed, copying
+   * them if they are shared with a published index.
+   *
+   * @param locations
+   *          the departures of each location, which this index owns
+   * @param location
+   *          the id of the location
+   * @return the departures of location, owned by this index
+   */
+  private Timeline ownLocation(ArrayList<ArrayList<Timeline>> locations, int location) {
+    List<Timeline> bucket = ownLocations(locations, location);
+    int slot = location % LOCATIONS_PER_BUCKET;
+    Timeline departures = bucket.get(slot);
+    // if first occurrence, add an empty timeline
+    if (departures == null || !owned.contains(departures)) {
+      departures = departures == null ? new Timeline() : new Timeline(departures);
+      owned.add(departures);
+      bucket.set(slot, departures);
+    }
+    return departures;
+  }
+
+  /**
+   * Gets the bucket of locations a location is in so that it can be changed,
+   * copying it if it is shared with a published index.
+   *
+   * @param locations
+   *          the departures of each location, which this index owns
+   * @param location
+   *          the id of a location in the bucket
+   * @return the departures of each location of the bucket, owned by this
+   *         index
+   */
+  private List<Timeline> ownLocations(ArrayList<ArrayList<Timeline>> locations, int location) {
+    int index = location / LOCATIONS_PER_BUCKET;
+    while (locations.size() <= index) {
+      locations.add(null);
+    }
+    ArrayList<Timeline> bucket = locations.get(index);
+    if (bucket == null || !owned.contains(bucket)) {
+      bucket = bucket == null
+          ? new ArrayList<>(Collections.<Timeline> nCopies(LOCATIONS_PER_BUCKET, null))
+          : new ArrayList<>(bucket);
+      owned.add(bucket);
+      locations.set(index, bucket);
+    }
+    return bucket;
+  }
+
+  /**
+   * Gets the timeline so that it can be changed, copying its list of buckets
+   * if it is shared with a published index.
+   *
+   * @return the timeline, owned by this index
+   */
+  private Timeline ownTimeline() {
+    if (!owned.contains(timeline)) {
+      timeline = new Timeline(timeline);
+      owned.add(timeline);
+    }
+    return timeline;
+  }
+
+  /**
+   * Gets the bucket of a timeline a departure time is in so that it can be
+   * changed, copying it if it is shared with a published index.
+   *
+   * @param departures
+   *          the timeline the bucket is in, which this index owns
+   * @param time
+   *          a departure time in the bucket, in milliseconds
+   * @return the departures of the bucket keyed by departure time, owned by
+   *         this index
+   */
+  private NavigableMap<Long, List<SingleTravel>> ownBucket(Timeline departures, Long time) {
+    Long key = time >> TIMELINE_SHIFT;
+    NavigableMap<Long, List<SingleTravel>> bucket = departures.get(key);
+    if (bucket == null || !owned.contains(bucket)) {
+      bucket = bucket == null ? new TreeMap<Long, List<SingleTravel>>() : new TreeMap<>(bucket);
+      owned.add(bucket);
+      departures.put(key, bucket);
+    }
+    return bucket;
+  }
+
+  /**
+   * Gets the travels sharing a departure time so that they can be changed,
+   * copying them if they are shared with a published index.
+   *
+   * @param departures
+   *          the departures the travels are in, which this index owns
+   * @param time
+   *          the departure time of the travels
+   * @param same
+   *          the travels departing at time
+   * @return the travels departing at time, owned by this index
+   */
+  private List<SingleTravel> ownDepartures(NavigableMap<Long, List<SingleTravel>> departures,
+      Long time, List<SingleTravel> same) {
+    if (owned.contains(same)) {
+      return same;
+    }
+    List<SingleTravel> copy = new ArrayList<>(same.size() + 1);
+    copy.addAll(same);
+    owned.add(copy);
+    departures.put(time, copy);
+    return copy;
+  }
+
+  /**
+   * Makes sure that this index can still be changed.
+   *
+   * @throws IllegalStateException
+   *           if this index was published
+   */
+  private void checkWritable() {
+    if (owned == null) {
+      throw new IllegalStateException("A published index cannot be changed.");
+    }
+  }
+
+  /**
+   * Creates an empty set of the collections an index owns.
+   *
+   * @return a set comparing collections by identity
+   */
+  private static Set<Object> newOwned() {
+    return Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> find(String origin, long lower, long upper) {
+    return find(Locations.findId(origin), lower, upper);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> find(int origin, long lower, long upper) {
+    return range(getLocation(origins, origin), lower, upper);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> find(String origin) {
+    return find(Locations.findId(origin));
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> find(int origin) {
+    return range(getLocation(origins, origin), Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> findTo(String destination, long lower, long upper) {
+    return findTo(Locations.findId(destination), lower, upper);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> findTo(int destination, long lower, long upper) {
+    return range(getLocation(destinations, destination), lower, upper);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> findAll(long lower) {
+    return range(timeline, lower, Long.MAX_VALUE);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> findAll(long lower, long upper) {
+    return range(timeline, lower, upper);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> findAllDescending() {
+    return new Range(timeline.descendingMap().values(), Long.MIN_VALUE, Long.MAX_VALUE, true);
+  }
+
+  /**
+   * Gets the departures of a timeline between two times, inclusively.
+   *
+   * @param departures
+   *          the timeline to search; may be null
+   * @param lower
+   *          the earliest departure time, in milliseconds
+   * @param upper
+   *          the latest departure time, in milliseconds
+   * @return the groups of travels sharing a departure time, in order
+   */
+  private static Collection<List<SingleTravel>> range(Timeline departures, long lower,
+      long upper) {
+    if (departures == null || lower > upper) {
+      return Collections.emptyList();
+    }
+    return new Range(departures.subMap(lower >> TIMELINE_SHIFT, true, upper >> TIMELINE_SHIFT,
+        true).values(), lower, upper, false);
+  }
+
+  /**
+   * Clears all travels from this index.
+   */
+  public void clear() {
+    checkWritable();
+    origins = new ArrayList<>();
+    owned.add(origins);
+    destinations = new ArrayList<>();
+    owned.add(destinations);
+    timeline = new Timeline();
+    owned.add(timeline);
+  }
+
+  /**
+   * Gets the departures of a location.
+   *
+   * @param locations
+   *          the departures of each location
+   * @param location
+   *          the id of the location
+   * @return the travels of location; null if there are none
+   */
+  private static Timeline getLocation(List<ArrayList<Timeline>> locations, int location) {
+    int index = location / LOCATIONS_PER_BUCKET;
+    List<Timeline> bucket =
+        location >= 0 && index < locations.size() ? locations.get(index) : null;
+    return bucket == null ? null : bucket.get(location % LOCATIONS_PER_BUCKET);
+  }
+
+  /**
+   * Reads this index, and indexes its travels by origin and destination again.
+   *
+   * @param in
+   *          the stream to read from
+   * @throws IOException
+   *           if the stream could not be read
+   * @throws ClassNotFoundException
+   *           if a class of this index could not be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    origins = new ArrayList<>();
+    destinations = new ArrayList<>();
+    owned = newOwned();
+    owned.add(origins);
+    owned.add(destinations);
+    owned.add(timeline);
+    for (NavigableMap<Long, List<SingleTravel>> bucket : timeline.values()) {
+      owned.add(bucket);
+      for (List<SingleTravel> same : bucket.values()) {
+        owned.add(same);
+        for (SingleTravel travel : same) {
+          addLocations(travel, travel.getStartMillis());
+        }
+      }
+    }
+  }
+
+  /**
+   * Departures keyed by their departure time in milliseconds, in buckets keyed
+   * by the departure time without its last TIMELINE_SHIFT bits.
+   */
+  private static class Timeline extends TreeMap<Long, NavigableMap<Long, List<SingleTravel>>> {
+    /**
+     * Serializable implementation.
+     */
+    private static final long serialVersionUID = 4418395340273845107L;
+
+    /**
+     * Creates an empty timeline.
+     */
+    private Timeline() {}
+
+    /**
+     * Creates a timeline sharing the buckets of another.
+     *
+     * @param base
+     *          the timeline to share the buckets of
+     */
+    private Timeline(Timeline base) {
+      super(base);
+    }
+  }
+
+  /**
+   * The departures of the buckets of a timeline, within a time range, as one
+   * collection.
+   */
+  private static class Range extends AbstractCollection<List<SingleTravel>> {
+    /**
+     * The buckets of the timeline, in order.
+     */
+    private final Collection<NavigableMap<Long, List<SingleTravel>>> buckets;
+    /**
+     * The earliest departure time, in milliseconds.
+     */
+    private final long lower;
+    /**
+     * The latest departure time, in milliseconds.
+     */
+    private final long upper;
+    /**
+     * Whether the buckets are in reverse order of departure.
+     */
+    private final boolean descending;
+
+    /**
+     * Creates a view of the departures of some buckets between two times,
+     * inclusively.
+     *
+     * @param buckets
+     *          the buckets of the timeline, in order
+     * @param lower
+     *          the earliest departure time, in milliseconds
+     * @param upper
+     *          the latest departure time, in milliseconds
+     * @param descending
+     *          whether the buckets are in reverse order of departure
+     */
+    private Range(Collection<NavigableMap<Long, List<SingleTravel>>> buckets, long lower,
+        long upper, boolean descending) {
+      this.buckets = buckets;
+      this.lower = lower;
+      this.upper = upper;
+      this.descending = descending;
+    }
+
+    /**
+     * Gets the departures of a bucket within the time range.
+     *
+     * @param bucket
+     *          the bucket to get from
+     * @return the groups of travels sharing a departure time, in order
+     */
+    private Collection<List<SingleTravel>> departures(
+        NavigableMap<Long, List<SingleTravel>> bucket) {
+      NavigableMap<Long, List<SingleTravel>> range = bucket.subMap(lower, true, upper, true);
+      return descending ? range.descendingMap().values() : range.values();
+    }
+
+    @Override
+    public Iterator<List<SingleTravel>> iterator() {
+      final Iterator<NavigableMap<Long, List<SingleTravel>>> next = buckets.iterator();
+      return new Iterator<List<SingleTravel>>() {
+        /**
+         * The departures of the current bucket.
+         */
+        private Iterator<List<SingleTravel>> current =
+            Collections.<List<SingleTravel>> emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+          while (!current.hasNext() && next.hasNext()) {
+            current = departures(next.next()).iterator();
+          }
+          return current.hasNext();
+        }
+
+        @Override
+        public List<SingleTravel> next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException("No more departures.");
+          }
+          return current.next();
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException("A range of departures cannot be changed.");
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      int size = 0;
+      for (NavigableMap<Long, List<SingleTravel>> bucket : buckets) {
+        size += departures(bucket).size();
+      }
+      return size;
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package csc.database;
+
+import csc.interfaces.DepartureSource;
+import csc.travel.Itinerary;
+import csc.travel.ItineraryPrefix;
+import csc.travel.SingleTravel;
+import csc.util.Constants;
+import csc.util.Locations;
+import csc.util.TimeFormat;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over every itinerary that departs from an origin on a date and
+ * arrives at a destination, exploring each path depth first. Itineraries are
+ * found one at a time as they are requested, so a caller that stops early does
+ * not pay for the rest of the search. When a search limit is reached, the
+ * iteration ends early and the limits are marked as truncated. The database
+ * must not be changed while iterating.
+ */
+public class ItineraryIterator implements Iterator<Itinerary> {
+  /**
+   * The index to search the travels of.
+   */
+  private final DepartureSource<SingleTravel> index;
+  /**
+   * The locations that can reach the destination.
+   */
+  private final Reachability.Table reach;
+  /**
+   * The id of the location to end the sequence.
+   */
+  private final int destination;
+  /**
+   * The limits of the search.
+   */
+  private final SearchLimits limits;
+  /**
+   * The paths being explored, the deepest on top.
+   */
+  private final Deque<Frame> stack;
+  /**
+   * The next itinerary to return; null if it was not found yet.
+   */
+  private Itinerary next = null;
+
+  /**
+   * Creates an iterator over the itineraries that depart from origin on the
+   * given date and arrive at destination.
+   *
+   * @param index
+   *          the index to search
+   * @param reach
+   *          the locations that can reach destination
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param limits
+   *          the limits of the search
+   */
+  public ItineraryIterator(DepartureSource<SingleTravel> index, Reachability.Table reach,
+      Date date, String origin, String destination, SearchLimits limits) {
+    this.index = index;
+    this.reach = reach;
+    this.destination = Locations.findId(destination);
+    this.limits = limits;
+    this.stack = new ArrayDeque<>();
+    if (this.destination >= 0) { // otherwise no travel arrives there
+      stack.push(new Frame(null, index.find(origin, date.getTime(),
+          TimeFormat.endOfDay(date))));
+    }
+  }
+
+  /**
+   * Creates an iterator over the itineraries that start with a sequence and
+   * arrive at destination. The sequence must not arrive at destination.
+   *
+   * @param index
+   *          the index to search
+   * @param reach
+   *          the locations that can reach destination
+   * @param start
+   *          the sequence to continue
+   * @param destination
+   *          the id of the location to end the sequence
+   * @param limits
+   *          the limits of the search
+   */
+  ItineraryIterator(DepartureSource<SingleTravel> index, Reachability.Table reach,
+      ItineraryPrefix start, int destination, SearchLimits limits) {
+    this.index = index;
+    this.reach = reach;
+    this.destination = destination;
+    this.limits = limits;
+    this.stack = new ArrayDeque<>();
+    if (limits.allowsLegs(start.size() + 1) && limits.expand()) {
+      stack.push(continuations(start));
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      next = advance();
+    }
+    return next != null;
+  }
+
+  @Override
+  public Itinerary next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException("No more itineraries.");
+    }
+    Itinerary ret = next;
+    next = null;
+    return ret;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("Itineraries cannot be removed.");
+  }
+
+  /**
+   * Explores paths until the next itinerary is found.
+   *
+   * @return the next itinerary; null if there are none left
+   */
+  private Itinerary advance() {
+    while (!stack.isEmpty()) {
+      Frame top = stack.peek();
+      SingleTravel st = top.nextTravel();
+      if (st == null) {
+        // every continuation of this path was explored
+        stack.pop();
+        continue;
+      }
+      ItineraryPrefix path = new ItineraryPrefix(st, top.path);
+      if (st.getDestinationId() == destination) {
+        // no more travels should be added, we've reached the destination
+        return path.toItinerary();
+      }
+      if (!limits.allowsLegs(path.size() + 1)) {
+        // too many travels to continue this path
+        continue;
+      }
+      if (!limits.expand()) {
+        stack.clear();
+        return null;
+      }
+      stack.push(continuations(path));
+    }
+    return null;
+  }
+
+  /**
+   * Gets the travels departing within the stopover after a sequence.
+   *
+   * @param path
+   *          the sequence to continue
+   * @return a path to explore that continues path
+   */
+  private Frame continuations(ItineraryPrefix path) {
+    long arrival = path.getEndMillis();
+    return new Frame(path, index.find(path.getDestinationId(),
+        arrival + Constants.MIN_STOPOVER, arrival + Constants.MAX_STOPOVER));
+  }
+
+  /**
+   * A path being explored, and the travels left to continue it with.
+   */
+  private class Frame {
+    /**
+     * The path to continue; null if it is empty.
+     */
+    private final ItineraryPrefix path;
+    /**
+     * The groups of travels left to continue with, in order of departure.
+     */
+    private final Iterator<List<SingleTravel>> groups;
+    /**
+     * The travels left in the current group.
+     */
+    private Iterator<SingleTravel> group;
+
+    /**
+     * Creates a path to explore.
+     *
+     * @param path
+     *          the path to continue; null if it is empty
+     * @param found
+     *          the groups of travels departing within its stopover
+     */
+    private Frame(ItineraryPrefix path, Iterable<List<SingleTravel>> found) {
+      this.path = path;
+      this.groups = found.iterator();
+      this.group = Collections.<SingleTravel> emptyIterator();
+    }
+
+    /**
+     * Gets the next travel that this path can be continued with.
+     *
+     * @return the next travel; null if there are none left
+     */
+    private SingleTravel nextTravel() {
+      while (group.hasNext() || groups.hasNext()) {
+        if (!group.hasNext()) {
+          group = groups.next().iterator();
+          continue;
+        }
+        SingleTravel st = group.next();
+        // if we haven't visited this location, and can still reach the end...
+        if (st.getAvailableCapacity() > 0
+            && (path == null || !path.containsOrigin(st.getDestinationId()))
+            && reach.canContinue(st)) {
+          return st;
+        }
+      }
+      return null;
+    }
+  }
+}
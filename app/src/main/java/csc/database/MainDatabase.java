@@ -1,27 +1,46 @@
 package csc.database;
 
+import csc.interfaces.DatabaseListener;
+import csc.interfaces.DepartureSource;
 import csc.travel.Itinerary;
 import csc.travel.SingleTravel;
 import csc.travel.Travel;
+import csc.travel.TravelComparator;
 import csc.travel.TravelType;
 import csc.users.RegisteredUser;
 import csc.util.Constants;
+import csc.util.Locations;
+import csc.util.TimeFormat;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.EnumMap;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * The main database, storing the user and travel databases.
+ *
+ * <p>Travels are searched in a snapshot of their index, which never changes
+ * once published. A change to the travels builds the next snapshot copy on
+ * write, and publishes it once the whole change is made, so searches never
+ * wait for a change or see part of one. Changes to the travels are made one at
+ * a time, while users are changed concurrently, locking only their own ids.
  */
 public class MainDatabase implements Serializable {
   /**
@@ -43,17 +62,58 @@ public class MainDatabase implements Serializable {
    */
   private final Map<TravelType, TravelDatabase> travels;
   /**
-   * An indexed collection of the travels originating from each location. Used
-   * for searching.
+   * The latest published version of the travel index, used for searching. It
+   * is rebuilt from the travel databases when read.
    */
-  private final Map<String, List<SingleTravel>> travelSearch;
+  private transient volatile Snapshot snapshot;
+  /**
+   * The lock held while changing this database.
+   */
+  private transient Object writeLock;
+  /**
+   * The results of recent itinerary searches.
+   */
+  private final ResultCache<ArrayList<Itinerary>> itineraryCache;
+  /**
+   * The results of recent travel searches.
+   */
+  private final ResultCache<ArrayList<SingleTravel>> travelCache;
+  /**
+   * The booked itineraries containing each travel. Bookings are not saved with
+   * their users, so neither is this.
+   */
+  private transient BookingIndex bookings;
+  /**
+   * The seats held on travels until they are booked or expire. Holds are
+   * short-lived, so they are not saved.
+   */
+  private transient SeatHolds holds;
+  /**
+   * The object to tell of every change to this database; null if there is
+   * none.
+   */
+  private transient volatile DatabaseListener<SingleTravel, RegisteredUser, Itinerary> listener;
+  /**
+   * The engine to use when searching itineraries without specifying one.
+   */
+  private SearchEngine engine = SearchEngine.Depth_First;
+  /**
+   * The threads to search itineraries with in parallel; null if they were not
+   * needed yet.
+   */
+  private transient ExecutorService executor = null;
 
   /**
    * Creates a new empty main database.
    */
   public MainDatabase() {
     this.users = new UserDatabase();
-    this.travelSearch = new HashMap<>();
+    this.snapshot = new Snapshot(new DepartureIndex(), 0);
+    this.writeLock = new Object();
+    this.itineraryCache = new ResultCache<>(Constants.RESULT_CACHE_SIZE);
+    this.travelCache = new ResultCache<>(Constants.RESULT_CACHE_SIZE);
+    this.bookings = new BookingIndex();
+    this.holds = new SeatHolds(Constants.HOLD_TICK, Constants.HOLD_WHEEL_SIZE);
 
     // initialize completely and make final
     Map<TravelType, TravelDatabase> travel = new EnumMap<>(TravelType.class);
@@ -63,6 +123,91 @@ public class MainDatabase implements Serializable {
     this.travels = Collections.unmodifiableMap(travel);
   }
 
+  /**
+   * Gets the engine used when searching itineraries without specifying one.
+   *
+   * @return the default search engine
+   */
+  public SearchEngine getSearchEngine() {
+    return engine;
+  }
+
+  /**
+   * Sets the engine used when searching itineraries without specifying one.
+   * Only the depth first engines find every itinerary; with another engine,
+   * those searches return just the itineraries that engine finds, such as the
+   * earliest arriving and the cheapest one.
+   *
+   * @param engine
+   *          the search engine to set; null sets the depth first engine
+   */
+  public void setSearchEngine(SearchEngine engine) {
+    this.engine = engine == null ? SearchEngine.Depth_First : engine;
+  }
+
+  /**
+   * Gets the cache of recent itinerary searches, for its statistics.
+   *
+   * @return the itinerary search cache
+   */
+  public ResultCache<ArrayList<Itinerary>> getItineraryCache() {
+    return itineraryCache;
+  }
+
+  /**
+   * Gets the cache of recent travel searches, for its statistics.
+   *
+   * @return the travel search cache
+   */
+  public ResultCache<ArrayList<SingleTravel>> getTravelCache() {
+    return travelCache;
+  }
+
+  /**
+   * Sets the threads to search itineraries and import files with in parallel.
+   * The threads are not shut down by this database.
+   *
+   * @param executor
+   *          the threads to set; null will use one daemon thread per processor
+   */
+  public synchronized void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Gets the threads to search itineraries and import files with in parallel,
+   * creating them if needed.
+   *
+   * @return the threads to work with
+   */
+  public synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+          new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable run) {
+              Thread thread = new Thread(run, "database-worker");
+              // working must not keep the application alive
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    }
+    return executor;
+  }
+
+  /**
+   * Sets the object to tell of every change made to this database from now on,
+   * including the bookings of its users.
+   *
+   * @param listener
+   *          the listener to set; null to not tell anyone
+   */
+  public void setListener(DatabaseListener<SingleTravel, RegisteredUser, Itinerary> listener) {
+    this.listener = listener;
+    bookings.setListener(listener);
+  }
+
   /**
    * Changes the email of a user.
    * 
@@ -72,7 +217,12 @@ public class MainDatabase implements Serializable {
    *          the email to change to
    */
   public void changeEmail(RegisteredUser ru, String email) {
+    String oldId = ru.getIdentifier();
     users.changeId(ru, email);
+    DatabaseListener<SingleTravel, RegisteredUser, Itinerary> told = listener;
+    if (told != null && !oldId.equals(ru.getIdentifier())) {
+      told.userRenamed(ru, oldId);
+    }
   }
 
   /**
@@ -84,7 +234,18 @@ public class MainDatabase implements Serializable {
    *          the id to change to
    */
   public void changeIdentifier(SingleTravel st, String id) {
-    travels.get(st.getType()).changeId(st, id);
+    synchronized (writeLock) {
+      Snapshot next = beginWrite();
+      String oldId = st.getIdentifier();
+      travels.get(st.getType()).changeId(st, id);
+      bookings.changeId(st.getType(), oldId, st.getIdentifier());
+      itineraryCache.invalidateReads(st);
+      travelCache.invalidateReads(st);
+      publish(next);
+      if (listener != null && !oldId.equals(st.getIdentifier())) {
+        listener.travelRenamed(st, oldId);
+      }
+    }
   }
 
   /**
@@ -100,17 +261,25 @@ public class MainDatabase implements Serializable {
           new Object[] { travel.getIdentifier(), travel.getType() });
       return;
     }
-    SingleTravel old = getTravel(travel.getType(), travel.getIdentifier());
-    if (old != null) {
-      if (old.equals(travel)) { // nothing updated
+    synchronized (writeLock) {
+      SingleTravel old = getTravel(travel.getType(), travel.getIdentifier());
+      if (old != null && old.equals(travel)) { // nothing updated
         return;
       }
-      removeTravelIndex(old);
+      Snapshot next = beginWrite();
+      if (old != null) {
+        // replaced rather than updated, since published snapshots contain it
+        removeTravelIndex(next, old);
+        travels.get(old.getType()).remove(old.getIdentifier());
+      }
+      travel.resetUsers();
+      SingleTravel stored = travels.get(travel.getType()).add(travel);
+      addTravelIndex(next, stored);
+      publish(next);
+      if (listener != null) {
+        listener.travelAdded(stored);
+      }
     }
-    travel.resetUsers();
-    // get the persisting object, then add it
-    // if there exists one, it will be updated and gotten
-    addTravelIndex(travels.get(travel.getType()).add(travel));
   }
 
   /**
@@ -122,62 +291,146 @@ public class MainDatabase implements Serializable {
    *          the id of the travel
    */
   public void removeTravel(TravelType type, String id) {
-    SingleTravel old = getTravel(type, id);
-    if (old != null) {
-      removeTravelIndex(old);
-      travels.get(type).remove(id);
+    synchronized (writeLock) {
+      SingleTravel old = getTravel(type, id);
+      if (old != null) {
+        Snapshot next = beginWrite();
+        removeTravelIndex(next, old);
+        travels.get(type).remove(id);
+        publish(next);
+        if (listener != null) {
+          listener.travelRemoved(old);
+        }
+      }
     }
   }
 
   /**
    * Removes the index of a travel for searching.
    *
+   * @param next
+   *          the snapshot being built
    * @param travel
    *          the travel object to remove
    */
-  private void removeTravelIndex(SingleTravel travel) {
-    // if first occurrence, add an empty set
-    String origin = travel.getOrigin().toLowerCase();
-    if (travelSearch.containsKey(origin)) {
-      List<SingleTravel> index = travelSearch.get(origin);
-      index.remove(travel);
-      if (index.isEmpty()) { // remove it altogether
-        travelSearch.remove(origin);
-      }
-    }
+  private void removeTravelIndex(Snapshot next, SingleTravel travel) {
+    next.index.remove(travel);
+    next.reachability.invalidate(travel);
+    itineraryCache.invalidate(travel);
+    travelCache.invalidate(travel);
+    travel.setCapacityListener(null);
 
     // to remove this travel completely, we remove it from the itineraries as
     // well (thus making the itinerary invalid and needed to be replaced)
-    for (RegisteredUser ru : users.getValues()) {
-      ru.removeTravel(travel);
-    }
+    bookings.cancel(travel);
+    holds.cancel(travel);
     travel.resetUsers();
   }
 
   /**
    * Indexes a travel for searching.
    *
+   * @param next
+   *          the snapshot being built
    * @param travel
    *          the travel object to index
    */
-  private void addTravelIndex(SingleTravel travel) {
-    // if first occurrence, add an empty set
-    String origin = travel.getOrigin().toLowerCase();
-    if (!travelSearch.containsKey(origin)) {
-      travelSearch.put(origin, new ArrayList<SingleTravel>());
-    }
-    travelSearch.get(origin).add(travel);
+  private void addTravelIndex(Snapshot next, SingleTravel travel) {
+    next.index.add(travel);
+    next.reachability.invalidate(travel);
+    itineraryCache.invalidate(travel);
+    travelCache.invalidate(travel);
+    // booking seats may make it full, or not full, for itineraries
+    travel.setCapacityListener(itineraryCache);
   }
 
   /**
-   * Adds travel info to this database.
+   * Adds travel info to this database, with the same result as adding each
+   * travel in turn. The batch is checked and reduced to the last change of each
+   * travel first, so each updated travel is only unindexed once, and the index
+   * is added to once, in order of departure. Searches see either none of the
+   * batch or all of it.
    *
    * @param toAdd
    *          the travels to add to this database.
    */
   public void addTravels(Iterable<SingleTravel> toAdd) {
-    for (SingleTravel tr : toAdd) {
-      addTravel(tr);
+    synchronized (writeLock) {
+      addBatch(toAdd);
+    }
+  }
+
+  /**
+   * Adds a batch of travels to this database, while holding the write lock.
+   *
+   * @param toAdd
+   *          the travels to add to this database.
+   */
+  private void addBatch(Iterable<SingleTravel> toAdd) {
+    // ordered by the last change of each travel, which is when it would be
+    // indexed again if added in turn
+    Map<List<Object>, PendingTravel> batch = new LinkedHashMap<>();
+    for (SingleTravel travel : toAdd) {
+      if (travel.isInvalid()) {
+        log.log(Level.INFO, "A travel of ID {0} and type {1} has invalid data. Skipping.",
+            new Object[] { travel.getIdentifier(), travel.getType() });
+        continue;
+      }
+      List<Object> key = Arrays.<Object>asList(travel.getType(), travel.getIdentifier());
+      PendingTravel pending = batch.get(key);
+      if (pending == null) {
+        pending = new PendingTravel(getTravel(travel.getType(), travel.getIdentifier()));
+      }
+      SingleTravel current = pending.latest != null ? pending.latest : pending.old;
+      if (current != null && current.equals(travel)) { // nothing updated
+        continue;
+      }
+      travel.resetUsers();
+      pending.latest = travel;
+      batch.remove(key);
+      batch.put(key, pending);
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    // unindex the updated travels, and remove their itineraries
+    Snapshot next = beginWrite();
+    List<SingleTravel> updated = new ArrayList<>();
+    for (PendingTravel pending : batch.values()) {
+      if (pending.old != null) {
+        next.index.remove(pending.old);
+        pending.old.setCapacityListener(null);
+        bookings.cancel(pending.old);
+        holds.cancel(pending.old);
+        travels.get(pending.old.getType()).remove(pending.old.getIdentifier());
+        updated.add(pending.old);
+      }
+    }
+    // an itinerary may contain several of them, so none are reset until all
+    // of their itineraries are gone
+    for (SingleTravel old : updated) {
+      old.resetUsers();
+    }
+
+    // each travel is replaced by its last version, like adding it in turn
+    List<SingleTravel> stored = new ArrayList<>(batch.size());
+    for (PendingTravel pending : batch.values()) {
+      stored.add(travels.get(pending.latest.getType()).add(pending.latest));
+    }
+    next.index.addAll(stored);
+    // a large batch touches most results, so they are discarded at once
+    next.reachability.clear();
+    itineraryCache.clear();
+    travelCache.clear();
+    for (SingleTravel travel : stored) {
+      travel.setCapacityListener(itineraryCache);
+    }
+    publish(next);
+    if (listener != null) {
+      for (SingleTravel travel : stored) {
+        listener.travelAdded(travel);
+      }
     }
   }
 
@@ -188,7 +441,17 @@ public class MainDatabase implements Serializable {
    *          the user to add to this database. Existing ones are replaced.
    */
   public void addUser(RegisteredUser user) {
-    users.add(user);
+    RegisteredUser old = users.get(user.getIdentifier());
+    RegisteredUser stored = users.add(user);
+    if (old == null && stored == user) {
+      // a replaced user keeps the bookings it already had
+      stored.setBookingListener(bookings);
+      bookings.addUser(stored);
+    }
+    DatabaseListener<SingleTravel, RegisteredUser, Itinerary> told = listener;
+    if (told != null) {
+      told.userAdded(stored);
+    }
   }
 
   /**
@@ -198,7 +461,75 @@ public class MainDatabase implements Serializable {
    *          the users to add to this database. Existing ones are replaced.
    */
   public void addUsers(Iterable<RegisteredUser> user) {
-    users.addAll(user);
+    for (RegisteredUser ru : user) {
+      addUser(ru);
+    }
+  }
+
+  /**
+   * Holds a seat on every travel of an itinerary for the default amount of
+   * time, so that it can be booked later.
+   *
+   * @param it
+   *          the itinerary to hold seats on, with travels from this database
+   * @return the hold; null if a travel in it is full
+   */
+  public SeatHold holdItinerary(Itinerary it) {
+    return holdItinerary(it, Constants.HOLD_TTL);
+  }
+
+  /**
+   * Holds a seat on every travel of an itinerary, so that it can be booked
+   * later. Either every travel gets a seat, or none do. Held seats count
+   * against the available capacity of the travels until the hold ends.
+   *
+   * @param it
+   *          the itinerary to hold seats on, with travels from this database
+   * @param ttl
+   *          the amount of milliseconds to hold the seats for
+   * @return the hold; null if a travel in it is full
+   */
+  public SeatHold holdItinerary(Itinerary it, long ttl) {
+    return holds.hold(it, System.currentTimeMillis(), ttl);
+  }
+
+  /**
+   * Books the itinerary of a hold for a user, using its held seats.
+   *
+   * @param user
+   *          the user to book for
+   * @param hold
+   *          the hold to book
+   * @return True if it was booked; false if the hold had ended, or the user
+   *         already booked the itinerary, in which case the seats are freed
+   */
+  public boolean bookHold(RegisteredUser user, SeatHold hold) {
+    expireHolds();
+    if (!holds.claim(hold)) {
+      return false;
+    }
+    if (!user.bookReservedItinerary(hold.getItinerary())) {
+      hold.getItinerary().unbook();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Ends a hold before it expires, and frees its seats.
+   *
+   * @param hold
+   *          the hold to release
+   */
+  public void releaseHold(SeatHold hold) {
+    holds.release(hold);
+  }
+
+  /**
+   * Frees the seats of the holds that have expired.
+   */
+  private void expireHolds() {
+    holds.expire(System.currentTimeMillis());
   }
 
   /**
@@ -212,23 +543,23 @@ public class MainDatabase implements Serializable {
   }
 
   /**
-   * Gets all users from this database.
+   * Gets all users from this database, as they are when it is called.
    *
    * @return a collection of all the users
    */
   public Collection<RegisteredUser> getAllUsers() {
-    return users.getValues();
+    return new ArrayList<>(users.getValues());
   }
 
   /**
-   * Gets all travels in the database.
+   * Gets all travels in the database, as of the latest change.
    *
    * @param type
    *          the type to get all travels for
-   * @return a collection of all the travels
+   * @return a collection of all the travels, in order of departure
    */
   public Collection<SingleTravel> getAllTravels(TravelType type) {
-    return travels.get(type).getValues();
+    return listTravels(snapshot.index, null, null, null, type, true);
   }
 
   /**
@@ -248,11 +579,52 @@ public class MainDatabase implements Serializable {
    * Clears all information from this database.
    */
   public void clear() {
-    users.clear();
-    for (TravelType tt : TravelType.values()) {
-      travels.get(tt).clear();
+    synchronized (writeLock) {
+      Snapshot next = beginWrite();
+      for (RegisteredUser ru : users.getValues()) {
+        ru.setBookingListener(null);
+      }
+      users.clear();
+      bookings.clear();
+      holds.clear();
+      for (TravelType tt : TravelType.values()) {
+        travels.get(tt).clear();
+      }
+      next.index.clear();
+      next.reachability.clear();
+      itineraryCache.clear();
+      travelCache.clear();
+      publish(next);
+      if (listener != null) {
+        listener.cleared();
+      }
     }
-    travelSearch.clear();
+  }
+
+  /**
+   * Starts building the next snapshot of the travels, from the latest one.
+   * Results that searches of older snapshots find from now on are not cached.
+   * Must be called while holding the write lock.
+   *
+   * @return the snapshot to change and then publish
+   */
+  private Snapshot beginWrite() {
+    Snapshot current = snapshot;
+    long version = current.version + 1;
+    itineraryCache.advance(version);
+    travelCache.advance(version);
+    return new Snapshot(current, version);
+  }
+
+  /**
+   * Publishes a snapshot of the travels, so that searches from now on use it.
+   *
+   * @param next
+   *          the snapshot to publish, which can no longer be changed
+   */
+  private void publish(Snapshot next) {
+    next.index.publish();
+    snapshot = next;
   }
 
   /**
@@ -308,21 +680,23 @@ public class MainDatabase implements Serializable {
    */
   public ArrayList<SingleTravel> searchTravels(Date date, String origin, String destination,
       TravelType type, Comparator<Travel> order) {
-    ArrayList<SingleTravel> ret;
-    if (type != null) { // search only type
-      ret = travels.get(type).searchTravels(date, origin, destination, true);
-    } else if (origin == null) {
-      // we can't use the index; just search all types
-      ret = new ArrayList<>();
-      for (TravelType typ : TravelType.values()) {
-        ret.addAll(travels.get(typ).searchTravels(date, null, destination, true));
-      }
-    } else { // search all
-      ret = listTravels(date, null, origin, destination, true);
+    expireHolds();
+    Snapshot current = snapshot;
+    List<Object> key = Arrays.<Object> asList(date == null ? null : date.getTime(),
+        toKey(origin), toKey(destination), type, order);
+    ArrayList<SingleTravel> ret = travelCache.get(key);
+    if (ret != null) {
+      return new ArrayList<>(ret);
     }
+
+    long generation = travelCache.getGeneration();
+    TracedIndex trace = new TracedIndex(current.index);
+    ret = listTravels(trace, date, origin, destination, type, true);
     if (order != null) {
       Collections.sort(ret, order);
     }
+    travelCache.put(key, new ArrayList<>(ret), trace.getOrigins(), trace.getDestinations(),
+        trace.readAll(), null, current.version, generation);
     return ret;
   }
 
@@ -330,32 +704,48 @@ public class MainDatabase implements Serializable {
    * Finds travel information matching the specified arguments, and puts them
    * into a list. THe list is then copied if needed.
    *
-   * @param lower
-   *          the date to start the travel; lower bound; a null value will
-   *          return all travels
-   * @param upper
-   *          the date to start the travel; upper bound; null value skips check
+   * @param index
+   *          the index to search
+   * @param date
+   *          the date to start the travel, matching the rest of its day; a
+   *          null value will return all travels
    * @param origin
-   *          the location to start the travel
+   *          the location to start the travel; null will match all
    * @param destination
    *          the destination to match; null will match all
+   * @param type
+   *          the type of travel to match; null will match all
    * @param includeFull
    *          whether to include full travels or not
-   * @return a list containing the travel information matched.
+   * @return a list containing the travel information matched, in order of
+   *         departure
    */
-  private ArrayList<SingleTravel> listTravels(Date lower, Date upper, String origin,
-      String destination, boolean includeFull) {
+  private static ArrayList<SingleTravel> listTravels(DepartureSource<SingleTravel> index,
+      Date date, String origin, String destination, TravelType type, boolean includeFull) {
+
+    // only the rest of the day of date
+    long lower = date == null ? Long.MIN_VALUE : date.getTime();
+    long upper = date == null ? Long.MAX_VALUE : TimeFormat.endOfDay(date);
+    Collection<List<SingleTravel>> found;
+    if (origin != null) {
+      found = index.find(origin, lower, upper);
+    } else if (destination != null) {
+      found = index.findTo(destination, lower, upper);
+    } else {
+      found = index.findAll(lower, upper);
+    }
 
+    // -1 if never seen, which no travel matches
+    int target = destination == null ? -1 : Locations.findId(destination);
     ArrayList<SingleTravel> ret = new ArrayList<>();
-    if (travelSearch.containsKey(origin.toLowerCase())) {
-      for (SingleTravel travel : travelSearch.get(origin.toLowerCase())) {
-        if ((destination == null || travel.getDestination().equalsIgnoreCase(destination))
-            && (includeFull || travel.getAvailableCapacity() > 0)
-            && (lower == null || travel.startsWithin(lower, upper))) {
+    for (List<SingleTravel> same : found) {
+      for (SingleTravel travel : same) {
+        if ((destination == null || travel.getDestinationId() == target)
+            && (type == null || travel.getType() == type)
+            && (includeFull || travel.getAvailableCapacity() > 0)) {
           ret.add(travel);
         }
       }
-      return ret;
     }
     return ret;
   }
@@ -392,21 +782,109 @@ public class MainDatabase implements Serializable {
    */
   public ArrayList<Itinerary> searchItineraries(Date date, String origin, String destination,
       Comparator<Travel> order) {
+    return searchItineraries(date, origin, destination, order, engine);
+  }
+
+  /**
+   * Returns the itineraries found by a search engine that depart from origin
+   * and arrive at destination on the given date, in the order specified.
+   *
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param order
+   *          the order to set the itineraries in; a null value will do nothing
+   * @param engine
+   *          the engine to search with
+   * @return a set of the itineraries that match the specifications
+   */
+  public ArrayList<Itinerary> searchItineraries(Date date, String origin, String destination,
+      Comparator<Travel> order, SearchEngine engine) {
+    return searchItineraries(date, origin, destination, order, engine, new SearchLimits())
+        .getItineraries();
+  }
+
+  /**
+   * Returns the itineraries found by a search engine that depart from origin
+   * and arrive at destination on the given date, in the order specified. The
+   * search stops early, with the itineraries found so far, if a limit is
+   * reached.
+   *
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param order
+   *          the order to set the itineraries in; a null value will do nothing
+   * @param engine
+   *          the engine to search with
+   * @param limits
+   *          the limits of the search
+   * @return the itineraries that match the specifications, and whether the
+   *         search was stopped early
+   */
+  public SearchResult searchItineraries(Date date, String origin, String destination,
+      Comparator<Travel> order, SearchEngine engine, SearchLimits limits) {
+    checkDate(date);
+    expireHolds();
     if (origin.equalsIgnoreCase(destination)) {
       log.log(Level.WARNING, "Incorrect input. origin and destination are the same.");
-      return new ArrayList<>();
+      return new SearchResult(new ArrayList<Itinerary>(), false);
+    }
+    if (Locations.findId(destination) < 0) {
+      // no travel arrives there; not cached, since no change would discard it
+      // once a travel does
+      return new SearchResult(new ArrayList<Itinerary>(), false);
+    }
+    // results without every amount of travels are not cached
+    boolean cached = limits.getMaxLegs() == 0;
+    List<Object> key = Arrays.<Object> asList(date.getTime(), toKey(origin),
+        toKey(destination), order, engine);
+    ArrayList<Itinerary> ret = cached ? itineraryCache.get(key) : null;
+    if (ret != null) {
+      return new SearchResult(copy(ret), false);
     }
-    ArrayList<Itinerary> ret = generateItineraries(date, origin, destination);
 
-    if (order != null) {
+    long generation = itineraryCache.getGeneration();
+    Snapshot current = snapshot;
+    Reachability reachability = current.reachability;
+    TracedIndex trace = new TracedIndex(current.index);
+    switch (engine) {
+      case Connection_Scan:
+        ret = new ConnectionScan(trace).search(date, origin, destination, limits);
+        break;
+      case Pareto_Optimal:
+        ret = new ParetoSearch(trace, reachability).search(date, origin, destination, limits);
+        break;
+      case Parallel_Depth_First:
+        ret = new ParallelSearch(trace, reachability, getExecutor()).search(date, origin,
+            destination, order, limits);
+        break;
+      default:
+        ret = generateItineraries(trace, reachability, date, origin, destination, limits);
+        break;
+    }
+
+    // the parallel search already sorted while merging
+    if (order != null && engine != SearchEngine.Parallel_Depth_First) {
       Collections.sort(ret, order);
     }
-    return ret;
+    if (cached && !limits.isTruncated()) {
+      itineraryCache.put(key, copy(ret), trace.getOrigins(), trace.getDestinations(),
+          trace.readAll(), reachability.get(destination), current.version, generation);
+    }
+    return new SearchResult(ret, limits.isTruncated());
   }
 
   /**
-   * Generates all itineraries that depart from origin and arrive at destination
-   * on the given date.
+   * Returns the itineraries that depart from origin and arrive at destination
+   * on the given date, and are not beaten on both total cost and total travel
+   * time by another, in the order specified.
    *
    * @param date
    *          the date to start the sequence
@@ -414,57 +892,328 @@ public class MainDatabase implements Serializable {
    *          the location to start the sequence
    * @param destination
    *          the location to end the sequence
-   * @return a list of the itineraries that match the specifications
+   * @param order
+   *          the order to set the itineraries in; a null value will do nothing
+   * @param maxLegs
+   *          the maximum amount of travels in an itinerary; a non-positive
+   *          value does not limit it
+   * @return a list of the non-dominated itineraries
    */
-  private ArrayList<Itinerary> generateItineraries(Date date, String origin,
-      String destination) {
-    ArrayList<Itinerary> list = new ArrayList<>();
-    generateItineraries(date, null, origin, destination, list, new Itinerary());
-    return list;
+  public ArrayList<Itinerary> searchParetoItineraries(Date date, String origin,
+      String destination, Comparator<Travel> order, int maxLegs) {
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxLegs(maxLegs);
+    return searchItineraries(date, origin, destination, order, SearchEngine.Pareto_Optimal,
+        limits).getItineraries();
   }
 
   /**
-   * Generates all itineraries that start with itin and arrive at destination on
-   * the given date, and adds them to an existing list.
+   * Returns the first itineraries, in the order specified, that depart from
+   * origin and arrive at destination on the given date. Itineraries are only
+   * explored until the first ones are known, if order is a TravelComparator.
    *
-   * @param lower
+   * @param date
    *          the date to start the sequence
-   * @param upper
-   *          the date to start the sequence, upper bound; null will skip check
    * @param origin
    *          the location to start the sequence
    * @param destination
    *          the location to end the sequence
-   * @param list
-   *          the list to add to
-   * @param itin
-   *          the running itinerary
+   * @param order
+   *          the order to set the itineraries in; a null value will do nothing
+   * @param limit
+   *          the maximum amount of itineraries to return; a non-positive value
+   *          will return all of those the search engine set finds
+   * @return a list of the first itineraries that match the specifications
    */
-  private void generateItineraries(Date lower, Date upper, String origin, String destination,
-      List<Itinerary> list, Itinerary itin) {
+  public ArrayList<Itinerary> searchItineraries(Date date, String origin, String destination,
+      Comparator<Travel> order, int limit) {
+    return searchItineraries(date, origin, destination, order, limit, new SearchLimits())
+        .getItineraries();
+  }
 
+  /**
+   * Returns the first itineraries, in the order specified, that depart from
+   * origin and arrive at destination on the given date. The search stops
+   * early, with the best itineraries found so far, if a limit is reached.
+   *
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param order
+   *          the order to set the itineraries in; a null value will do nothing
+   * @param limit
+   *          the maximum amount of itineraries to return; a non-positive value
+   *          will return all of those the search engine set finds
+   * @param limits
+   *          the limits of the search
+   * @return the first itineraries that match the specifications, and whether
+   *         the search was stopped early
+   */
+  public SearchResult searchItineraries(Date date, String origin, String destination,
+      Comparator<Travel> order, int limit, SearchLimits limits) {
+    checkDate(date);
+    expireHolds();
+    if (limit <= 0) {
+      return searchItineraries(date, origin, destination, order, engine, limits);
+    }
     if (origin.equalsIgnoreCase(destination)) {
-      // no more itineraries should be made, we've reached the destination
-      list.add(itin);
-      return;
+      log.log(Level.WARNING, "Incorrect input. origin and destination are the same.");
+      return new SearchResult(new ArrayList<Itinerary>(), false);
+    }
+    if (order instanceof TravelComparator) {
+      Snapshot current = snapshot;
+      return new SearchResult(new BestFirstSearch(current.index, current.reachability).search(
+          date, origin, destination, (TravelComparator) order, limit, limits),
+          limits.isTruncated());
+    }
+    Iterator<Itinerary> iter = iterateItineraries(date, origin, destination, limits);
+    if (order == null) {
+      // the first ones found are the first ones, so stop exploring after them
+      ArrayList<Itinerary> ret = new ArrayList<>(limit);
+      while (ret.size() < limit && iter.hasNext()) {
+        ret.add(iter.next());
+      }
+      return new SearchResult(ret, limits.isTruncated());
+    }
+    // other orders cannot be bounded, so only keep the first ones in a heap
+    PriorityQueue<Itinerary> heap = new PriorityQueue<>(limit + 1,
+        Collections.reverseOrder(order));
+    while (iter.hasNext()) {
+      heap.add(iter.next());
+      if (heap.size() > limit) {
+        heap.poll();
+      }
+    }
+    ArrayList<Itinerary> ret = new ArrayList<>(heap);
+    Collections.sort(ret, order);
+    return new SearchResult(ret, limits.isTruncated());
+  }
+
+  /**
+   * Iterates over the itineraries that depart from origin and arrive at
+   * destination on the given date, finding each one only when it is requested.
+   * The travels are iterated as they were when it was called, so later changes
+   * to the database are not seen.
+   *
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @return an iterator over the itineraries that match the specifications
+   */
+  public Iterator<Itinerary> iterateItineraries(Date date, String origin,
+      String destination) {
+    return iterateItineraries(date, origin, destination, new SearchLimits());
+  }
+
+  /**
+   * Iterates over the itineraries that depart from origin and arrive at
+   * destination on the given date, finding each one only when it is requested.
+   * The iteration ends early if a limit is reached. The travels are iterated as
+   * they were when it was called, so later changes to the database are not
+   * seen.
+   *
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param limits
+   *          the limits of the search
+   * @return an iterator over the itineraries that match the specifications
+   */
+  public Iterator<Itinerary> iterateItineraries(Date date, String origin,
+      String destination, SearchLimits limits) {
+    checkDate(date);
+    expireHolds();
+    if (origin.equalsIgnoreCase(destination)) {
+      log.log(Level.WARNING, "Incorrect input. origin and destination are the same.");
+      return Collections.<Itinerary> emptyIterator();
     }
-    // get all travels originating from origin and in the appropriate time range
-    List<SingleTravel> found = listTravels(lower, upper, origin, null, false);
+    Snapshot current = snapshot;
+    return new ItineraryIterator(current.index, current.reachability.get(destination), date,
+        origin, destination, limits);
+  }
 
-    for (SingleTravel st : found) {
-      // if we haven't visited this location...
-      if (!itin.containsOrigin(st.getDestination())) {
-        // repeat process with new date range and origin
-        Date newLower = new Date(st.getEndTime().getTime() + Constants.MIN_STOPOVER);
-        Date newUpper = new Date(st.getEndTime().getTime() + Constants.MAX_STOPOVER);
+  /**
+   * Copies a list of itineraries, so that changing one does not change the
+   * other.
+   *
+   * @param itineraries
+   *          the itineraries to copy
+   * @return a list of copies of the itineraries
+   */
+  private static ArrayList<Itinerary> copy(List<Itinerary> itineraries) {
+    ArrayList<Itinerary> ret = new ArrayList<>(itineraries.size());
+    for (Itinerary it : itineraries) {
+      ret.add(it.copy());
+    }
+    return ret;
+  }
+
+  /**
+   * Converts a location to the form used in cache keys.
+   *
+   * @param location
+   *          the location to convert; may be null
+   * @return the location in lower case; null if location is null
+   */
+  private static String toKey(String location) {
+    return location == null ? null : location.toLowerCase();
+  }
 
-        Itinerary itinCopy = itin.copy();
-        itinCopy.add(st);
+  /**
+   * Makes sure that an itinerary search has a date to start on. Unlike
+   * travels, itineraries are never searched on every date.
+   *
+   * @param date
+   *          the date to start the search
+   * @throws IllegalArgumentException
+   *           if date is null
+   */
+  private static void checkDate(Date date) {
+    if (date == null) {
+      throw new IllegalArgumentException("Itineraries can only be searched on a date.");
+    }
+  }
 
-        generateItineraries(newLower, newUpper, st.getDestination(), destination, list,
-            itinCopy);
+  /**
+   * Generates all itineraries that depart from origin and arrive at destination
+   * on the given date, until a limit is reached.
+   *
+   * @param index
+   *          the index to search
+   * @param reachability
+   *          the reachability of the travels of index
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param limits
+   *          the limits of the search
+   * @return a list of the itineraries that match the specifications
+   */
+  private static ArrayList<Itinerary> generateItineraries(DepartureSource<SingleTravel> index,
+      Reachability reachability, Date date, String origin, String destination,
+      SearchLimits limits) {
+    ArrayList<Itinerary> list = new ArrayList<>();
+    Iterator<Itinerary> iter = new ItineraryIterator(index, reachability.get(destination),
+        date, origin, destination, limits);
+    while (iter.hasNext()) {
+      list.add(iter.next());
+    }
+    return list;
+  }
+
+  /**
+   * Reads this database, indexes its travels and listens to their capacity
+   * again, and indexes the bookings of its users again, without any seat
+   * holds.
+   *
+   * @param in
+   *          the stream to read from
+   * @throws IOException
+   *           if the stream could not be read
+   * @throws ClassNotFoundException
+   *           if a class of this database could not be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    DepartureIndex index = new DepartureIndex();
+    for (TravelDatabase td : travels.values()) {
+      index.addAll(td.getValues());
+      for (SingleTravel st : td.getValues()) {
+        st.setCapacityListener(itineraryCache);
       }
     }
-    // if no travels are found, an itinerary from this location cannot be made
+    index.publish();
+    snapshot = new Snapshot(index, 0);
+    writeLock = new Object();
+    bookings = new BookingIndex();
+    holds = new SeatHolds(Constants.HOLD_TICK, Constants.HOLD_WHEEL_SIZE);
+    for (RegisteredUser ru : users.getValues()) {
+      ru.setBookingListener(bookings);
+      bookings.addUser(ru);
+    }
+  }
+
+  /**
+   * The changes made to one travel by a batch of travels being added.
+   */
+  private static class PendingTravel {
+    /**
+     * The travel in this database before the batch; null if there was none.
+     */
+    private final SingleTravel old;
+    /**
+     * The last version of the travel that changed it; null if none did.
+     */
+    private SingleTravel latest;
+
+    /**
+     * Creates the changes to a travel, without any changes yet.
+     *
+     * @param old
+     *          the travel in this database before the batch; null if none
+     */
+    private PendingTravel(SingleTravel old) {
+      this.old = old;
+    }
+  }
+
+  /**
+   * A version of the travel index, and the reachability of its travels.
+   */
+  private static class Snapshot {
+    /**
+     * The travels originating from each location, ordered by departure time.
+     */
+    private final DepartureIndex index;
+    /**
+     * The locations that can reach each searched destination. Used for
+     * skipping travels that cannot be part of an itinerary.
+     */
+    private final Reachability reachability;
+    /**
+     * The amount of changes made to the travels before this version.
+     */
+    private final long version;
+
+    /**
+     * Creates a snapshot of an index, without any reachability yet.
+     *
+     * @param index
+     *          the travel index
+     * @param version
+     *          the amount of changes made before this version
+     */
+    private Snapshot(DepartureIndex index, long version) {
+      this.index = index;
+      this.reachability = new Reachability(index);
+      this.version = version;
+    }
+
+    /**
+     * Creates the next version of a snapshot, with the same travels and the
+     * reachability already computed for them.
+     *
+     * @param base
+     *          the snapshot to start from
+     * @param version
+     *          the amount of changes made before this version
+     */
+    private Snapshot(Snapshot base, long version) {
+      this.index = new DepartureIndex(base.index);
+      this.reachability = new Reachability(index, base.reachability);
+      this.version = version;
+    }
   }
 }
@@ -0,0 +1,326 @@
+package csc.database;
+
+import csc.interfaces.DepartureSource;
+import csc.travel.Itinerary;
+import csc.travel.ItineraryPrefix;
+import csc.travel.SingleTravel;
+import csc.travel.Travel;
+import csc.util.Constants;
+import csc.util.Locations;
+import csc.util.TimeFormat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Searches for every itinerary depth first, like ItineraryIterator, but splits
+ * the first one or two travels of the itineraries into separate tasks. Each
+ * task explores the paths after its travels into its own list, and the lists
+ * are joined at the end in the same order a sequential search would find them.
+ * The database must not be changed while searching.
+ */
+public class ParallelSearch {
+  /**
+   * The index to search the travels of.
+   */
+  private final DepartureSource<SingleTravel> index;
+  /**
+   * The locations that can reach each destination.
+   */
+  private final Reachability reachability;
+  /**
+   * The threads to run the tasks on.
+   */
+  private final ExecutorService executor;
+
+  /**
+   * Creates a search over the travels of an index.
+   *
+   * @param index
+   *          the index to search
+   * @param reachability
+   *          the locations that can reach each destination in index
+   * @param executor
+   *          the threads to run the tasks on
+   */
+  public ParallelSearch(DepartureSource<SingleTravel> index, Reachability reachability,
+      ExecutorService executor) {
+    this.index = index;
+    this.reachability = reachability;
+    this.executor = executor;
+  }
+
+  /**
+   * Finds all itineraries that depart from origin on the given date and arrive
+   * at destination, in the order specified.
+   *
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param order
+   *          the order to set the itineraries in; a null value keeps the order
+   *          of a depth first search
+   * @param limits
+   *          the limits of the search, shared by every task
+   * @return a list of the itineraries that match the specifications
+   */
+  public ArrayList<Itinerary> search(Date date, String origin, String destination,
+      Comparator<Travel> order, SearchLimits limits) {
+    int target = Locations.findId(destination);
+    if (target < 0) { // no travel arrives there
+      return new ArrayList<>();
+    }
+    // found once before forking, so the tasks share one table instead of each
+    // waiting on the cache for it
+    Reachability.Table reach = reachability.get(destination);
+
+    List<ItineraryPrefix> starts = new ArrayList<>();
+    for (List<SingleTravel> same : index.find(origin, date.getTime(),
+        TimeFormat.endOfDay(date))) {
+      for (SingleTravel st : same) {
+        if (st.getAvailableCapacity() > 0 && reach.canContinue(st)) {
+          starts.add(new ItineraryPrefix(st, null));
+        }
+      }
+    }
+    if (starts.size() < Constants.PARALLEL_MIN_TASKS && limits.allowsLegs(2)) {
+      starts = split(starts, target, reach);
+    }
+
+    List<Future<ArrayList<Itinerary>>> tasks = new ArrayList<>(starts.size());
+    for (ItineraryPrefix start : starts) {
+      tasks.add(executor.submit(new Task(start, target, reach, order, limits)));
+    }
+    List<ArrayList<Itinerary>> found = new ArrayList<>(tasks.size());
+    try {
+      for (Future<ArrayList<Itinerary>> task : tasks) {
+        found.add(task.get());
+      }
+    } catch (InterruptedException e) {
+      cancel(tasks);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while searching itineraries.", e);
+    } catch (ExecutionException e) {
+      cancel(tasks);
+      throw new IllegalStateException("Could not search itineraries.", e.getCause());
+    }
+    return order == null ? concat(found) : merge(found, order);
+  }
+
+  /**
+   * Continues each sequence that does not arrive at the destination with one
+   * more travel, keeping the order a depth first search would find them in.
+   *
+   * @param starts
+   *          the sequences to continue
+   * @param destination
+   *          the id of the location to end the sequence
+   * @param reach
+   *          the locations that can reach destination
+   * @return a list of the continued sequences
+   */
+  private List<ItineraryPrefix> split(List<ItineraryPrefix> starts, int destination,
+      Reachability.Table reach) {
+    List<ItineraryPrefix> ret = new ArrayList<>();
+    for (ItineraryPrefix start : starts) {
+      if (start.getDestinationId() == destination) {
+        ret.add(start);
+        continue;
+      }
+      long arrival = start.getEndMillis();
+      for (List<SingleTravel> same : index.find(start.getDestinationId(),
+          arrival + Constants.MIN_STOPOVER, arrival + Constants.MAX_STOPOVER)) {
+        for (SingleTravel st : same) {
+          // if we haven't visited this location, and can still reach the end...
+          if (st.getAvailableCapacity() > 0 && !start.containsOrigin(st.getDestinationId())
+              && reach.canContinue(st)) {
+            ret.add(new ItineraryPrefix(st, start));
+          }
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Cancels every task that has not finished.
+   *
+   * @param tasks
+   *          the tasks to cancel
+   */
+  private static void cancel(List<Future<ArrayList<Itinerary>>> tasks) {
+    for (Future<ArrayList<Itinerary>> task : tasks) {
+      task.cancel(true);
+    }
+  }
+
+  /**
+   * Joins lists one after the other.
+   *
+   * @param lists
+   *          the lists to join
+   * @return a list of every element of lists, in order
+   */
+  private static ArrayList<Itinerary> concat(List<ArrayList<Itinerary>> lists) {
+    int size = 0;
+    for (List<Itinerary> list : lists) {
+      size += list.size();
+    }
+    ArrayList<Itinerary> ret = new ArrayList<>(size);
+    for (List<Itinerary> list : lists) {
+      ret.addAll(list);
+    }
+    return ret;
+  }
+
+  /**
+   * Merges sorted lists into one sorted list. Equal elements are kept in the
+   * order of the lists, as if they were joined and then sorted.
+   *
+   * @param lists
+   *          the sorted lists to merge
+   * @param order
+   *          the order the lists are sorted in
+   * @return a sorted list of every element of lists
+   */
+  private static ArrayList<Itinerary> merge(List<ArrayList<Itinerary>> lists,
+      final Comparator<Travel> order) {
+    PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, lists.size()),
+        new Comparator<Cursor>() {
+          @Override
+          public int compare(Cursor first, Cursor second) {
+            int ret = order.compare(first.head, second.head);
+            return ret != 0 ? ret : Integer.compare(first.list, second.list);
+          }
+        });
+    int size = 0;
+    for (int i = 0; i < lists.size(); i++) {
+      size += lists.get(i).size();
+      Iterator<Itinerary> iter = lists.get(i).iterator();
+      if (iter.hasNext()) {
+        heads.add(new Cursor(i, iter));
+      }
+    }
+    ArrayList<Itinerary> ret = new ArrayList<>(size);
+    while (!heads.isEmpty()) {
+      Cursor next = heads.poll();
+      ret.add(next.head);
+      if (next.rest.hasNext()) {
+        next.head = next.rest.next();
+        heads.add(next);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * The position in a sorted list being merged.
+   */
+  private static class Cursor {
+    /**
+     * The index of the list being merged.
+     */
+    private final int list;
+    /**
+     * The elements after head.
+     */
+    private final Iterator<Itinerary> rest;
+    /**
+     * The smallest element of the list not merged yet.
+     */
+    private Itinerary head;
+
+    /**
+     * Creates a cursor at the start of a list.
+     *
+     * @param list
+     *          the index of the list
+     * @param rest
+     *          an iterator over the list, with at least one element
+     */
+    private Cursor(int list, Iterator<Itinerary> rest) {
+      this.list = list;
+      this.rest = rest;
+      this.head = rest.next();
+    }
+  }
+
+  /**
+   * Finds every itinerary that starts with a sequence of travels.
+   */
+  private class Task implements Callable<ArrayList<Itinerary>> {
+    /**
+     * The sequence the itineraries start with.
+     */
+    private final ItineraryPrefix start;
+    /**
+     * The id of the location to end the sequence.
+     */
+    private final int destination;
+    /**
+     * The locations that can reach destination.
+     */
+    private final Reachability.Table reach;
+    /**
+     * The order to sort the itineraries in; null will not sort them.
+     */
+    private final Comparator<Travel> order;
+    /**
+     * The limits of the search.
+     */
+    private final SearchLimits limits;
+
+    /**
+     * Creates a task to find the itineraries starting with a sequence.
+     *
+     * @param start
+     *          the sequence the itineraries start with
+     * @param destination
+     *          the id of the location to end the sequence
+     * @param reach
+     *          the locations that can reach destination
+     * @param order
+     *          the order to sort the itineraries in; null will not sort them
+     * @param limits
+     *          the limits of the search
+     */
+    private Task(ItineraryPrefix start, int destination, Reachability.Table reach,
+        Comparator<Travel> order, SearchLimits limits) {
+      this.start = start;
+      this.destination = destination;
+      this.reach = reach;
+      this.order = order;
+      this.limits = limits;
+    }
+
+    @Override
+    public ArrayList<Itinerary> call() {
+      ArrayList<Itinerary> ret = new ArrayList<>();
+      if (start.getDestinationId() == destination) {
+        ret.add(start.toItinerary());
+        return ret;
+      }
+      Iterator<Itinerary> iter = new ItineraryIterator(index, reach, start, destination,
+          limits);
+      while (iter.hasNext()) {
+        ret.add(iter.next());
+      }
+      if (order != null) {
+        Collections.sort(ret, order);
+      }
+      return ret;
+    }
+  }
+}
@@ -0,0 +1,248 @@
+package csc.database;
+
+import csc.interfaces.DepartureSource;
+import csc.travel.Itinerary;
+import csc.travel.ItineraryPrefix;
+import csc.travel.SingleTravel;
+import csc.util.Constants;
+import csc.util.Locations;
+import csc.util.TimeFormat;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Searches for the itineraries that are not beaten on both total cost and total
+ * travel time by another itinerary. The search is done in rounds, where each
+ * round adds one more travel to the itineraries improved in the last round.
+ * Each travel keeps only the labels that no other label ending with it is at
+ * least as cheap and as late departing as, while visiting no location the
+ * label did not, since a visited location cannot be travelled to again.
+ */
+public class ParetoSearch {
+  /**
+   * The index to search the travels of.
+   */
+  private final DepartureSource<SingleTravel> index;
+  /**
+   * The locations that can reach each destination.
+   */
+  private final Reachability reachability;
+
+  /**
+   * Creates a search over the travels of an index.
+   *
+   * @param index
+   *          the index to search
+   * @param reachability
+   *          the locations that can reach each destination in index
+   */
+  public ParetoSearch(DepartureSource<SingleTravel> index, Reachability reachability) {
+    this.index = index;
+    this.reachability = reachability;
+  }
+
+  /**
+   * Finds the itineraries that depart from origin on the given date, arrive at
+   * destination, and are not beaten on both cost and travel time.
+   *
+   * @param date
+   *          the date to start the sequence
+   * @param origin
+   *          the location to start the sequence
+   * @param destination
+   *          the location to end the sequence
+   * @param limits
+   *          the limits of the search
+   * @return a list of the non-dominated itineraries
+   */
+  public ArrayList<Itinerary> search(Date date, String origin, String destination,
+      SearchLimits limits) {
+    // the labels kept for each travel
+    Map<SingleTravel, List<Label>> bags = new IdentityHashMap<>();
+    List<Label> arrived = new ArrayList<>();
+    int target = Locations.findId(destination);
+    if (target < 0) { // no travel arrives there
+      return new ArrayList<>();
+    }
+    Reachability.Table reach = reachability.get(destination);
+
+    // round one: the travels departing from the origin on the date
+    List<Label> marked = new ArrayList<>();
+    for (List<SingleTravel> same : index.find(origin, date.getTime(),
+        TimeFormat.endOfDay(date))) {
+      for (SingleTravel st : same) {
+        if (st.getAvailableCapacity() > 0 && reach.canContinue(st)) {
+          improve(bags, new Label(st, null), target, marked, arrived);
+        }
+      }
+    }
+
+    for (int legs = 1; !marked.isEmpty() && limits.allowsLegs(legs + 1); legs++) {
+      List<Label> next = new ArrayList<>();
+      for (Label label : marked) {
+        if (label.removed) {
+          continue;
+        }
+        if (!limits.expand()) {
+          // stop after this round
+          next.clear();
+          break;
+        }
+        extend(bags, label, target, next, arrived, reach);
+      }
+      marked = next;
+    }
+
+    ArrayList<Itinerary> ret = new ArrayList<>();
+    for (Label label : arrived) {
+      if (!label.removed && !isDominated(label, arrived)) {
+        ret.add(label.path.toItinerary());
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Adds one more travel to a label, with every travel departing within the
+   * stopover of it.
+   *
+   * @param bags
+   *          the labels kept for each travel
+   * @param label
+   *          the label to extend
+   * @param destination
+   *          the id of the location to end the sequence
+   * @param marked
+   *          the labels to extend in the next round
+   * @param arrived
+   *          the labels arriving at the destination
+   * @param reach
+   *          the locations that can reach destination
+   */
+  private void extend(Map<SingleTravel, List<Label>> bags, Label label, int destination,
+      List<Label> marked, List<Label> arrived, Reachability.Table reach) {
+    long arrival = label.path.getEndMillis();
+    for (List<SingleTravel> same : index.find(label.path.getDestinationId(),
+        arrival + Constants.MIN_STOPOVER, arrival + Constants.MAX_STOPOVER)) {
+      for (SingleTravel st : same) {
+        // if we haven't visited this location, and can still reach the end...
+        if (st.getAvailableCapacity() > 0 && !label.path.containsOrigin(st.getDestinationId())
+            && reach.canContinue(st)) {
+          improve(bags, new Label(st, label), destination, marked, arrived);
+        }
+      }
+    }
+  }
+
+  /**
+   * Keeps a label if no label of the same travel is at least as good, and
+   * removes the labels that it is at least as good as. A label is only as good
+   * as another if it visited no other locations, or it could not continue to
+   * the locations the other one can.
+   *
+   * @param bags
+   *          the labels kept for each travel
+   * @param label
+   *          the label to keep
+   * @param destination
+   *          the id of the location to end the sequence
+   * @param marked
+   *          the labels to extend in the next round
+   * @param arrived
+   *          the labels arriving at the destination
+   */
+  private static void improve(Map<SingleTravel, List<Label>> bags, Label label,
+      int destination, List<Label> marked, List<Label> arrived) {
+    SingleTravel travel = label.path.getTravel();
+    double cost = label.path.getCost();
+    List<Label> bag = bags.get(travel);
+    if (bag == null) {
+      bag = new ArrayList<>(2);
+      bags.put(travel, bag);
+    }
+    for (Label old : bag) {
+      if (old.path.getCost() <= cost && old.departure >= label.departure
+          && old.path.visitsWithin(label.path)) {
+        return;
+      }
+    }
+    Iterator<Label> iter = bag.iterator();
+    while (iter.hasNext()) {
+      Label old = iter.next();
+      if (cost <= old.path.getCost() && label.departure >= old.departure
+          && label.path.visitsWithin(old.path)) {
+        old.removed = true;
+        iter.remove();
+      }
+    }
+    bag.add(label);
+
+    // an itinerary ends as soon as it reaches the destination
+    if (travel.getDestinationId() == destination) {
+      arrived.add(label);
+    } else {
+      marked.add(label);
+    }
+  }
+
+  /**
+   * Gets whether a label arriving at the destination is beaten on both cost
+   * and travel time by another.
+   *
+   * @param label
+   *          the label to check
+   * @param arrived
+   *          the labels arriving at the destination
+   * @return True if another label is at least as good on both and better on
+   *         one of them
+   */
+  private static boolean isDominated(Label label, List<Label> arrived) {
+    double cost = label.path.getCost();
+    long time = label.path.getTravelTime();
+    for (Label other : arrived) {
+      double otherCost = other.path.getCost();
+      long otherTime = other.path.getTravelTime();
+      if (!other.removed && otherCost <= cost && otherTime <= time
+          && (otherCost < cost || otherTime < time)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A sequence of travels kept for the travel it ends with.
+   */
+  private static class Label {
+    /**
+     * The sequence of travels of this label.
+     */
+    private final ItineraryPrefix path;
+    /**
+     * The departure time of the first travel of path, in milliseconds.
+     */
+    private final long departure;
+    /**
+     * Whether a better label of the same travel replaced this one.
+     */
+    private boolean removed = false;
+
+    /**
+     * Creates a label continuing a sequence with a travel.
+     *
+     * @param travel
+     *          the travel to continue with
+     * @param previous
+     *          the label to continue; null starts a new sequence
+     */
+    private Label(SingleTravel travel, Label previous) {
+      this.path = new ItineraryPrefix(travel, previous == null ? null : previous.path);
+      this.departure = previous == null ? travel.getStartMillis() : previous.departure;
+    }
+  }
+}
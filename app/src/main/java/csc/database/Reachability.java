@@ -0,0 +1,253 @@
+package csc.database;
+
+import csc.travel.SingleTravel;
+import csc.util.Constants;
+import csc.util.Locations;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * A cache of which locations can still reach a destination, and until when.
+ * Searches use it to skip travels that can never be continued to the
+ * destination within the stopover limits. Seat capacity and revisited
+ * locations are not considered, so a location that is reported as unable to
+ * reach the destination never can, but not the other way around. Can be used
+ * from multiple threads at once.
+ */
+public class Reachability implements Serializable {
+  /**
+   * Serializable implementation.
+   */
+  private static final long serialVersionUID = 5281339021846152046L;
+
+  /**
+   * The reachability of a destination that no travel arrives at.
+   */
+  private static final Table NOWHERE = new Table();
+
+  /**
+   * The index to compute reachability from.
+   */
+  private final DepartureIndex index;
+  /**
+   * The reachability of each destination, by the id of the destination, least
+   * recently used first. Ids are not saved, so neither is this.
+   */
+  private transient Map<Integer, Table> tables;
+
+  /**
+   * Creates an empty reachability cache over the travels of an index.
+   *
+   * @param index
+   *          the index to compute reachability from
+   */
+  public Reachability(DepartureIndex index) {
+    this.index = index;
+    this.tables = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * Creates a reachability cache over the next version of an index, starting
+   * with the reachability already computed for the version before it. Each
+   * travel changed since must then invalidate it.
+   *
+   * @param index
+   *          the index to compute reachability from
+   * @param base
+   *          the reachability of the version of the index before it
+   */
+  Reachability(DepartureIndex index, Reachability base) {
+    this.index = index;
+    // tables never change, so they can be shared
+    synchronized (base) {
+      this.tables = new LinkedHashMap<>(16, 0.75f, true);
+      tables.putAll(base.tables);
+    }
+  }
+
+  /**
+   * Gets the reachability of a destination, computing it if needed.
+   *
+   * @param destination
+   *          the destination to reach
+   * @return the reachability of destination
+   */
+  public synchronized Table get(String destination) {
+    int key = Locations.findId(destination);
+    if (key < 0) { // never seen, so not cached
+      return NOWHERE;
+    }
+    Table table = tables.get(key);
+    if (table == null) {
+      table = new Table(key, index);
+      tables.put(key, table);
+      if (tables.size() > Constants.REACHABILITY_CACHE_SIZE) { // least recently used
+        Iterator<Table> iter = tables.values().iterator();
+        iter.next();
+        iter.remove();
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Discards the reachability of the destinations that a changed travel may
+   * be useful for. Must be called whenever a travel is indexed or unindexed.
+   *
+   * @param travel
+   *          the travel that was added or removed
+   */
+  public synchronized void invalidate(SingleTravel travel) {
+    Iterator<Table> iter = tables.values().iterator();
+    while (iter.hasNext()) {
+      // a travel that cannot be continued was never useful, nor will it be
+      if (iter.next().canContinue(travel)) {
+        iter.remove();
+      }
+    }
+  }
+
+  /**
+   * Clears all reachability information.
+   */
+  public synchronized void clear() {
+    tables.clear();
+  }
+
+  /**
+   * Reads this cache, without any reachability information.
+   *
+   * @param in
+   *          the stream to read from
+   * @throws IOException
+   *           if the stream could not be read
+   * @throws ClassNotFoundException
+   *           if a class of this cache could not be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    tables = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * The reachability of a single destination.
+   */
+  public static class Table {
+    /**
+     * The id of the destination.
+     */
+    private final int destination;
+    /**
+     * The latest departure time from each location, by the id of the location,
+     * that can still reach the destination, in milliseconds; Long.MIN_VALUE
+     * if it cannot.
+     */
+    private final long[] latest;
+
+    /**
+     * Creates the reachability of a destination that no travel arrives at,
+     * from which no location can reach it.
+     */
+    private Table() {
+      this.destination = -1;
+      this.latest = new long[0];
+    }
+
+    /**
+     * Computes the reachability of a destination.
+     *
+     * @param destination
+     *          the id of the destination to reach
+     * @param index
+     *          the index of all travels
+     */
+    private Table(int destination, DepartureIndex index) {
+      this.destination = destination;
+      // locations seen after this can have no travels in index yet
+      this.latest = new long[Locations.size()];
+      Arrays.fill(latest, Long.MIN_VALUE);
+
+      // the useful departure times from each location. any travel that can
+      // continue a travel departs later than it, so it was already checked
+      Map<Integer, NavigableSet<Long>> useful = new HashMap<>();
+      for (List<SingleTravel> same : index.findAllDescending()) {
+        for (SingleTravel st : same) {
+          if (!reaches(st, useful)) {
+            continue;
+          }
+          int origin = st.getOriginId();
+          NavigableSet<Long> times = useful.get(origin);
+          if (times == null) {
+            times = new TreeSet<>();
+            useful.put(origin, times);
+            // in descending order, the first is the latest
+            latest[origin] = st.getStartMillis();
+          }
+          times.add(st.getStartMillis());
+        }
+      }
+    }
+
+    /**
+     * Gets whether a travel arrives at the destination, or at a location with
+     * a useful departure within its stopover.
+     *
+     * @param st
+     *          the travel to check
+     * @param useful
+     *          the useful departure times from each location
+     * @return True if st is useful to reach the destination
+     */
+    private boolean reaches(SingleTravel st, Map<Integer, NavigableSet<Long>> useful) {
+      if (st.getDestinationId() == destination) {
+        return true;
+      }
+      NavigableSet<Long> times = useful.get(st.getDestinationId());
+      if (times == null) {
+        return false;
+      }
+      long arrival = st.getEndMillis();
+      Long next = times.ceiling(arrival + Constants.MIN_STOPOVER);
+      return next != null && next <= arrival + Constants.MAX_STOPOVER;
+    }
+
+    /**
+     * Gets whether the destination can be reached from a location, departing
+     * at or after a time.
+     *
+     * @param location
+     *          the id of the location to depart from
+     * @param lower
+     *          the earliest departure time, in milliseconds
+     * @return False if the destination can never be reached
+     */
+    public boolean canReach(int location, long lower) {
+      if (location == destination) {
+        return true;
+      }
+      return location >= 0 && location < latest.length && latest[location] >= lower;
+    }
+
+    /**
+     * Gets whether a travel can be continued to the destination.
+     *
+     * @param st
+     *          the travel to check
+     * @return False if the destination can never be reached after st
+     */
+    public boolean canContinue(SingleTravel st) {
+      return canReach(st.getDestinationId(),
+          st.getEndMillis() + Constants.MIN_STOPOVER);
+    }
+  }
+}
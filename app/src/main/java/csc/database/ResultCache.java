@@ -0,0 +1,343 @@
+package csc.database;
+
+import csc.interfaces.CapacityListener;
+import csc.travel.SingleTravel;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A cache of search results, discarding the least recently used when full.
+ * Each result records the locations whose departures or arrivals it read, so
+ * that a change to a travel only discards the results that could have been
+ * different because of it. Results are not saved when serialized.
+ *
+ * <p>Results are computed from a version of the travels, and a result computed
+ * from a version older than the latest change is not cached, since it may
+ * already be out of date when it is put. A travel changing in place, like its
+ * capacity, makes no version, so it advances a generation instead, and a result
+ * computed while the generation changed is not cached either.
+ *
+ * @param <V>
+ *          the type of the results
+ */
+public class ResultCache<V> implements Serializable, CapacityListener<SingleTravel> {
+  /**
+   * Serializable implementation.
+   */
+  private static final long serialVersionUID = -1208405447934218390L;
+
+  /**
+   * The maximum amount of results to keep.
+   */
+  private final int capacity;
+  /**
+   * The cached results of each query, least recently used first.
+   */
+  private transient Map<Object, Entry<V>> entries;
+  /**
+   * The oldest version of the travels that results can be computed from.
+   */
+  private transient long version = 0;
+  /**
+   * The amount of times a travel that results may have read changed in place.
+   */
+  private transient long generation = 0;
+  /**
+   * The amount of queries found in this cache.
+   */
+  private long hits = 0;
+  /**
+   * The amount of queries not found in this cache.
+   */
+  private long misses = 0;
+  /**
+   * The amount of results discarded to make room for another.
+   */
+  private long evictions = 0;
+  /**
+   * The amount of results discarded because a travel changed.
+   */
+  private long invalidations = 0;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param capacity
+   *          the maximum amount of results to keep
+   */
+  public ResultCache(int capacity) {
+    this.capacity = capacity;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * Gets the cached result of a query.
+   *
+   * @param key
+   *          the query, which must implement equals and hashCode
+   * @return the result; null if it is not cached
+   */
+  public synchronized V get(Object key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.value;
+  }
+
+  /**
+   * Caches the result of a query.
+   *
+   * @param key
+   *          the query, which must implement equals and hashCode
+   * @param value
+   *          the result, which must not be changed afterwards
+   * @param origins
+   *          the ids of the locations whose departures the query read
+   * @param destinations
+   *          the ids of the locations whose arrivals the query read
+   * @param all
+   *          whether the query read the departures of every location
+   * @param reach
+   *          the reachability the query skipped travels with; null if it did
+   *          not skip any
+   * @param version
+   *          the version of the travels the query read
+   * @param generation
+   *          the generation of this cache before the query read any travel
+   */
+  public synchronized void put(Object key, V value, Set<Integer> origins,
+      Set<Integer> destinations, boolean all, Reachability.Table reach, long version,
+      long generation) {
+    // the travels changed while searching
+    if (version < this.version || generation != this.generation) {
+      return;
+    }
+    entries.put(key, new Entry<>(value, copy(origins), copy(destinations), all, reach));
+    if (entries.size() > capacity) { // least recently used
+      Iterator<Entry<V>> iter = entries.values().iterator();
+      iter.next();
+      iter.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Copies a set of locations that searching threads may still be adding to.
+   *
+   * @param locations
+   *          a synchronized set of the ids of locations
+   * @return a copy of locations
+   */
+  private static Set<Integer> copy(Set<Integer> locations) {
+    synchronized (locations) {
+      return new HashSet<>(locations);
+    }
+  }
+
+  /**
+   * Discards the results that a travel being added or removed may change.
+   *
+   * @param travel
+   *          the travel that was added or removed
+   */
+  public synchronized void invalidate(SingleTravel travel) {
+    Iterator<Entry<V>> iter = entries.values().iterator();
+    while (iter.hasNext()) {
+      Entry<V> entry = iter.next();
+      // a travel that was not read can only matter if it makes a skipped
+      // location reach the destination
+      if (entry.reads(travel) || entry.reach != null && entry.reach.canContinue(travel)) {
+        iter.remove();
+        invalidations++;
+      }
+    }
+  }
+
+  /**
+   * Discards the results that read a changed travel, from its origin or to its
+   * destination, and rejects the results of the searches already reading the
+   * travels.
+   *
+   * @param travel
+   *          the travel that was changed
+   */
+  public synchronized void invalidateReads(SingleTravel travel) {
+    generation++;
+    Iterator<Entry<V>> iter = entries.values().iterator();
+    while (iter.hasNext()) {
+      if (iter.next().reads(travel)) {
+        iter.remove();
+        invalidations++;
+      }
+    }
+  }
+
+  /**
+   * Rejects the results of the versions of the travels before one, since the
+   * travels are about to change. Must be called before the results that the
+   * change may change are discarded.
+   *
+   * @param version
+   *          the version of the travels being made
+   */
+  public synchronized void advance(long version) {
+    this.version = Math.max(this.version, version);
+  }
+
+  /**
+   * Gets the generation of this cache, to be read before a search reads any
+   * travel and then given to put.
+   *
+   * @return the amount of times a travel changed in place
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  @Override
+  public void capacityChanged(SingleTravel source) {
+    invalidateReads(source);
+  }
+
+  /**
+   * Discards every result.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Gets the amount of results in this cache.
+   *
+   * @return the amount of results
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Gets the amount of queries found in this cache.
+   *
+   * @return the amount of hits
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Gets the amount of queries not found in this cache.
+   *
+   * @return the amount of misses
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Gets the amount of results discarded to make room for another.
+   *
+   * @return the amount of evictions
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Gets the amount of results discarded because a travel changed.
+   *
+   * @return the amount of invalidations
+   */
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  /**
+   * Reads this cache, without any results.
+   *
+   * @param in
+   *          the stream to read from
+   * @throws IOException
+   *           if the stream could not be read
+   * @throws ClassNotFoundException
+   *           if a class of this cache could not be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * A cached result, and what it was computed from.
+   *
+   * @param <V>
+   *          the type of the result
+   */
+  private static class Entry<V> {
+    /**
+     * The result.
+     */
+    private final V value;
+    /**
+     * The ids of the locations whose departures were read.
+     */
+    private final Set<Integer> origins;
+    /**
+     * The ids of the locations whose arrivals were read.
+     */
+    private final Set<Integer> destinations;
+    /**
+     * Whether the departures of every location were read.
+     */
+    private final boolean all;
+    /**
+     * The reachability travels were skipped with; null if none were skipped.
+     */
+    private final Reachability.Table reach;
+
+    /**
+     * Creates a cached result.
+     *
+     * @param value
+     *          the result
+     * @param origins
+     *          the locations whose departures were read
+     * @param destinations
+     *          the locations whose arrivals were read
+     * @param all
+     *          whether the departures of every location were read
+     * @param reach
+     *          the reachability travels were skipped with
+     */
+    private Entry(V value, Set<Integer> origins, Set<Integer> destinations, boolean all,
+        Reachability.Table reach) {
+      this.value = value;
+      this.origins = origins;
+      this.destinations = destinations;
+      this.all = all;
+      this.reach = reach;
+    }
+
+    /**
+     * Gets whether a travel was read, from its origin or to its destination.
+     *
+     * @param travel
+     *          the travel to check
+     * @return True if the departures of the origin of travel, or the arrivals
+     *         at its destination, were read
+     */
+    private boolean reads(SingleTravel travel) {
+      return all || origins.contains(travel.getOriginId())
+          || destinations.contains(travel.getDestinationId());
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package csc.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An enum for the ways itineraries can be searched for.
+ */
+public enum SearchEngine {
+  /**
+   * Finds every itinerary by exploring each path from the origin.
+   */
+  Depth_First,
+  /**
+   * Finds the earliest arriving and the cheapest itineraries by scanning each
+   * travel once in order of departure. At most these two are found.
+   */
+  Connection_Scan,
+  /**
+   * Finds the itineraries that no other itinerary beats on both total cost and
+   * total travel time.
+   */
+  Pareto_Optimal,
+  /**
+   * Finds every itinerary like Depth_First, exploring the paths after each
+   * first travel in parallel.
+   */
+  Parallel_Depth_First;
+
+  private final String name;
+
+  private SearchEngine() {
+    this.name = name().replace("_", " ");
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+  /**
+   * Gets the names of all Search Engines.
+   *
+   * @return a list containing the names
+   */
+  public static List<String> getUsableNames() {
+    List<String> engines = new ArrayList<>(values().length);
+    for (SearchEngine se : values()) {
+      engines.add(se.toString());
+    }
+    return engines;
+  }
+
+  /**
+   * Gets a Search Engine by the given index.
+   *
+   * @param selected
+   *          the selected index
+   * @return a Search Engine if one is found; null otherwise
+   */
+  public static SearchEngine getByIndex(int selected) {
+    if (selected < 0 || selected >= values().length) {
+      return null;
+    }
+    return values()[selected];
+  }
+}
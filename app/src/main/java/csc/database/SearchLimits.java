@@ -0,0 +1,165 @@
+package csc.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The limits of a single itinerary search: a deadline, a maximum amount of
+ * travels per itinerary, and a maximum amount of partial itineraries to expand.
+ * A search can also be cancelled from another thread. When a limit other than
+ * the amount of travels stops a search, it returns what it found so far and
+ * the limits are marked as truncated. A new instance should be used for each
+ * search.
+ */
+public class SearchLimits {
+  /**
+   * How many expansions are done between checks of the clock.
+   */
+  private static final int CLOCK_INTERVAL = 256;
+
+  /**
+   * The time to stop searching at, in milliseconds; 0 for no deadline.
+   */
+  private long deadline = 0;
+  /**
+   * The maximum amount of travels in an itinerary; 0 for no limit.
+   */
+  private int maxLegs = 0;
+  /**
+   * The maximum amount of partial itineraries to expand; 0 for no limit.
+   */
+  private long maxExpanded = 0;
+  /**
+   * The amount of partial itineraries expanded so far.
+   */
+  private final AtomicLong expanded = new AtomicLong();
+  /**
+   * Whether the search was cancelled.
+   */
+  private volatile boolean cancelled = false;
+  /**
+   * Whether a limit stopped the search before it was done.
+   */
+  private volatile boolean truncated = false;
+
+  /**
+   * Creates limits that do not limit a search.
+   */
+  public SearchLimits() {}
+
+  /**
+   * Sets the time to stop searching at.
+   *
+   * @param deadline
+   *          the time to stop at, in milliseconds since the epoch; a
+   *          non-positive value sets no deadline
+   */
+  public void setDeadline(long deadline) {
+    this.deadline = Math.max(0, deadline);
+  }
+
+  /**
+   * Sets how long to search for, starting now.
+   *
+   * @param millis
+   *          the amount of milliseconds to search for
+   */
+  public void setTimeout(long millis) {
+    this.deadline = System.currentTimeMillis() + Math.max(0, millis);
+  }
+
+  /**
+   * Gets the maximum amount of travels in an itinerary.
+   *
+   * @return the maximum amount of travels; 0 if there is no limit
+   */
+  public int getMaxLegs() {
+    return maxLegs;
+  }
+
+  /**
+   * Sets the maximum amount of travels in an itinerary. Itineraries with more
+   * travels are not searched for, which does not truncate a search.
+   *
+   * @param maxLegs
+   *          the maximum amount of travels; a non-positive value sets no limit
+   */
+  public void setMaxLegs(int maxLegs) {
+    this.maxLegs = Math.max(0, maxLegs);
+  }
+
+  /**
+   * Sets the maximum amount of partial itineraries to expand.
+   *
+   * @param maxExpanded
+   *          the maximum amount to expand; a non-positive value sets no limit
+   */
+  public void setMaxExpanded(long maxExpanded) {
+    this.maxExpanded = Math.max(0, maxExpanded);
+  }
+
+  /**
+   * Gets the amount of partial itineraries expanded so far.
+   *
+   * @return the amount expanded
+   */
+  public long getExpanded() {
+    return expanded.get();
+  }
+
+  /**
+   * Cancels the search. Can be called from any thread.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Gets whether the search was cancelled.
+   *
+   * @return True if cancel was called
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Gets whether a limit stopped the search before it was done, so that it
+   * only returned part of its results.
+   *
+   * @return True if the results are partial
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  /**
+   * Gets whether itineraries with an amount of travels may be searched for.
+   *
+   * @param legs
+   *          the amount of travels
+   * @return True if legs is within the maximum
+   */
+  public boolean allowsLegs(int legs) {
+    return maxLegs == 0 || legs <= maxLegs;
+  }
+
+  /**
+   * Counts the expansion of a partial itinerary, and checks that the search
+   * may continue.
+   *
+   * @return False if the search must stop
+   */
+  boolean expand() {
+    if (truncated) {
+      return false;
+    }
+    long count = expanded.incrementAndGet();
+    if (cancelled || maxExpanded != 0 && count > maxExpanded
+        || deadline != 0 && count % CLOCK_INTERVAL == 1
+            && System.currentTimeMillis() >= deadline) {
+      truncated = true;
+      return false;
+    }
+    return true;
+  }
+}
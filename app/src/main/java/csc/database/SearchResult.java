@@ -0,0 +1,52 @@
+package csc.database;
+
+import csc.travel.Itinerary;
+
+import java.util.ArrayList;
+
+/**
+ * The itineraries found by a search, and whether a limit stopped the search
+ * before all of them were found.
+ */
+public class SearchResult {
+  /**
+   * The itineraries found.
+   */
+  private final ArrayList<Itinerary> itineraries;
+  /**
+   * Whether the search was stopped before it was done.
+   */
+  private final boolean truncated;
+
+  /**
+   * Creates the result of a search.
+   *
+   * @param itineraries
+   *          the itineraries found
+   * @param truncated
+   *          whether the search was stopped before it was done
+   */
+  public SearchResult(ArrayList<Itinerary> itineraries, boolean truncated) {
+    this.itineraries = itineraries;
+    this.truncated = truncated;
+  }
+
+  /**
+   * Gets the itineraries found.
+   *
+   * @return a list of the itineraries
+   */
+  public ArrayList<Itinerary> getItineraries() {
+    return itineraries;
+  }
+
+  /**
+   * Gets whether the search was stopped before it was done, so that only part
+   * of the itineraries were found.
+   *
+   * @return True if the itineraries are partial
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+}
@@ -0,0 +1,109 @@
+package csc.database;
+
+import csc.travel.Itinerary;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Seats held on every travel of an itinerary for a while, so that they can be
+ * booked later without being taken by someone else first. A hold ends once,
+ * when it is booked, released, or expires, or when one of its travels changes.
+ */
+public class SeatHold {
+  /**
+   * The itinerary whose seats are held.
+   */
+  private final Itinerary itinerary;
+  /**
+   * The UNIX timestamp at which the seats stop being held.
+   */
+  private final long expiry;
+  /**
+   * The tick of the timing wheel at which this hold expires.
+   */
+  private final long deadline;
+  /**
+   * Whether the seats are still held, or how the hold ended.
+   */
+  private final AtomicReference<State> state;
+
+  /**
+   * Creates a hold on seats that were already reserved.
+   *
+   * @param itinerary
+   *          the itinerary whose seats are held
+   * @param expiry
+   *          the UNIX timestamp at which the seats stop being held
+   * @param deadline
+   *          the tick of the timing wheel at which the hold expires
+   */
+  SeatHold(Itinerary itinerary, long expiry, long deadline) {
+    this.itinerary = itinerary;
+    this.expiry = expiry;
+    this.deadline = deadline;
+    this.state = new AtomicReference<>(State.HELD);
+  }
+
+  /**
+   * Gets the itinerary whose seats are held.
+   *
+   * @return the itinerary
+   */
+  public Itinerary getItinerary() {
+    return itinerary;
+  }
+
+  /**
+   * Gets the time at which the seats stop being held.
+   *
+   * @return a UNIX timestamp of the expiry
+   */
+  public long getExpiry() {
+    return expiry;
+  }
+
+  /**
+   * Gets whether the seats are still held.
+   *
+   * @return True if the hold has not ended yet
+   */
+  public boolean isHeld() {
+    return state.get() == State.HELD;
+  }
+
+  /**
+   * Gets how the hold ended.
+   *
+   * @return the state of the hold
+   */
+  public State getState() {
+    return state.get();
+  }
+
+  /**
+   * Gets the tick of the timing wheel at which this hold expires.
+   *
+   * @return the tick of the expiry
+   */
+  long getDeadline() {
+    return deadline;
+  }
+
+  /**
+   * Ends the hold, unless it has already ended.
+   *
+   * @param end
+   *          how the hold ends
+   * @return True if this call ended the hold
+   */
+  boolean finish(State end) {
+    return state.compareAndSet(State.HELD, end);
+  }
+
+  /**
+   * Whether seats are held, or how a hold ended.
+   */
+  public enum State {
+    HELD, BOOKED, RELEASED, EXPIRED
+  }
+}
@@ -0,0 +1,233 @@
+package csc.database;
+
+import csc.travel.Itinerary;
+import csc.travel.SingleTravel;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The seat holds of a database, expired by a hashed timing wheel. Time is cut
+ * into ticks, and each hold is put in the slot of the tick it expires at, so
+ * creating one and expiring it each take constant time however many there are.
+ * The wheel only turns when it is told the time, so holds expire the next time
+ * the database is used after their expiry. Held seats are booked on their
+ * travels, so they count against the available capacity until they are freed.
+ * Can be used from multiple threads at once.
+ */
+class SeatHolds {
+  /**
+   * The amount of milliseconds in a tick.
+   */
+  private final long tick;
+  /**
+   * The holds expiring at each tick, by the tick modulo the amount of slots.
+   * Holds that ended early are only removed once their slot is reached.
+   */
+  private final List<ArrayList<SeatHold>> slots;
+  /**
+   * The holds still held on each travel, so they can end when it changes.
+   */
+  private final Map<SingleTravel, Set<SeatHold>> holds;
+  /**
+   * The next tick whose holds have not expired yet; -1 before the first time
+   * the wheel is told the time.
+   */
+  private long current = -1;
+
+  /**
+   * Creates a timing wheel without any holds.
+   *
+   * @param tick
+   *          the amount of milliseconds in a tick
+   * @param size
+   *          the amount of slots of the wheel
+   */
+  SeatHolds(long tick, int size) {
+    this.tick = tick;
+    this.slots = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      slots.add(new ArrayList<SeatHold>());
+    }
+    this.holds = new IdentityHashMap<>();
+  }
+
+  /**
+   * Holds a seat on every travel of an itinerary, unless one of them is full.
+   *
+   * @param itinerary
+   *          the itinerary to hold seats on
+   * @param now
+   *          the current UNIX timestamp
+   * @param ttl
+   *          the amount of milliseconds to hold the seats for
+   * @return the hold; null if a travel is full
+   */
+  synchronized SeatHold hold(Itinerary itinerary, long now, long ttl) {
+    expire(now);
+    if (!itinerary.book()) {
+      return null;
+    }
+    long expiry = now + Math.max(ttl, 0);
+    // rounded up, so a hold never expires early
+    long deadline = Math.max(current, (expiry + tick - 1) / tick);
+    SeatHold hold = new SeatHold(itinerary, expiry, deadline);
+    slots.get(slot(deadline)).add(hold);
+    for (SingleTravel st : itinerary.getTravels()) {
+      Set<SeatHold> same = holds.get(st);
+      if (same == null) {
+        same = new LinkedHashSet<>();
+        holds.put(st, same);
+      }
+      same.add(hold);
+    }
+    return hold;
+  }
+
+  /**
+   * Ends a hold without freeing its seats, so they can be booked.
+   *
+   * @param hold
+   *          the hold to end
+   * @return True if the seats were still held; false if the hold had ended
+   */
+  synchronized boolean claim(SeatHold hold) {
+    if (!hold.finish(SeatHold.State.BOOKED)) {
+      return false;
+    }
+    forget(hold, null);
+    return true;
+  }
+
+  /**
+   * Ends a hold and frees its seats.
+   *
+   * @param hold
+   *          the hold to end
+   * @return True if the seats were still held; false if the hold had ended
+   */
+  synchronized boolean release(SeatHold hold) {
+    return end(hold, SeatHold.State.RELEASED, null);
+  }
+
+  /**
+   * Ends every hold with a travel that is about to change, and frees their
+   * seats.
+   *
+   * @param travel
+   *          the travel that is changing
+   */
+  synchronized void cancel(SingleTravel travel) {
+    Set<SeatHold> same = holds.remove(travel);
+    if (same != null) {
+      for (SeatHold hold : same) {
+        end(hold, SeatHold.State.RELEASED, travel);
+      }
+    }
+  }
+
+  /**
+   * Turns the wheel to a time, and frees the seats of every hold that expired
+   * by then. Turning it for many ticks only checks each slot once.
+   *
+   * @param now
+   *          the current UNIX timestamp
+   */
+  synchronized void expire(long now) {
+    long target = now / tick;
+    if (current < 0) {
+      current = target;
+    }
+    if (target < current) {
+      return;
+    }
+    long ticks = Math.min(target - current + 1, slots.size());
+    for (long i = 0; i < ticks; i++) {
+      ArrayList<SeatHold> slot = slots.get(slot(current + i));
+      // keep the holds of later turns of the wheel, in place
+      int kept = 0;
+      for (int j = 0; j < slot.size(); j++) {
+        SeatHold hold = slot.get(j);
+        if (!hold.isHeld()) {
+          continue;
+        }
+        if (hold.getDeadline() <= target) {
+          end(hold, SeatHold.State.EXPIRED, null);
+        } else {
+          slot.set(kept++, hold);
+        }
+      }
+      slot.subList(kept, slot.size()).clear();
+    }
+    current = target + 1;
+  }
+
+  /**
+   * Forgets every hold, without freeing any seats.
+   */
+  synchronized void clear() {
+    for (ArrayList<SeatHold> slot : slots) {
+      for (SeatHold hold : slot) {
+        hold.finish(SeatHold.State.RELEASED);
+      }
+      slot.clear();
+    }
+    holds.clear();
+  }
+
+  /**
+   * Ends a hold and frees its seats, unless it has already ended.
+   *
+   * @param hold
+   *          the hold to end
+   * @param end
+   *          how the hold ends
+   * @param skip
+   *          a travel whose holds were already forgotten; null if none were
+   * @return True if this call ended the hold
+   */
+  private boolean end(SeatHold hold, SeatHold.State end, SingleTravel skip) {
+    if (!hold.finish(end)) {
+      return false;
+    }
+    hold.getItinerary().unbook();
+    forget(hold, skip);
+    return true;
+  }
+
+  /**
+   * Removes a hold from the holds of its travels. It stays in its slot until
+   * the slot is reached.
+   *
+   * @param hold
+   *          the hold to remove
+   * @param skip
+   *          a travel whose holds were already forgotten; null if none were
+   */
+  private void forget(SeatHold hold, SingleTravel skip) {
+    for (SingleTravel st : hold.getItinerary().getTravels()) {
+      if (st == skip) {
+        continue;
+      }
+      Set<SeatHold> same = holds.get(st);
+      if (same != null && same.remove(hold) && same.isEmpty()) {
+        holds.remove(st);
+      }
+    }
+  }
+
+  /**
+   * Gets the slot of a tick.
+   *
+   * @param at
+   *          the tick to find
+   * @return the index of the slot of the tick
+   */
+  private int slot(long at) {
+    return (int) (at % slots.size());
+  }
+}
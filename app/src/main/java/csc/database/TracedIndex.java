@@ -0,0 +1,142 @@
+package csc.database;
+
+import csc.interfaces.DepartureSource;
+import csc.travel.SingleTravel;
+import csc.util.Locations;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A read-only view of an index that records which locations were searched for
+ * departures or arrivals, so that a search result can be discarded when one of
+ * them changes. Can be read from multiple threads at once.
+ */
+class TracedIndex implements DepartureSource<SingleTravel> {
+  /**
+   * The index being read.
+   */
+  private final DepartureSource<SingleTravel> index;
+  /**
+   * The ids of the locations whose departures were read.
+   */
+  private final Set<Integer> origins;
+  /**
+   * The ids of the locations whose arrivals were read.
+   */
+  private final Set<Integer> destinations;
+  /**
+   * Whether the departures of every location were read.
+   */
+  private volatile boolean all = false;
+
+  /**
+   * Creates a view of an index that has not been read yet.
+   *
+   * @param index
+   *          the index to read
+   */
+  TracedIndex(DepartureSource<SingleTravel> index) {
+    this.index = index;
+    this.origins = Collections.synchronizedSet(new HashSet<Integer>());
+    this.destinations = Collections.synchronizedSet(new HashSet<Integer>());
+  }
+
+  /**
+   * Gets the locations whose departures were read.
+   *
+   * @return a set of the ids of the locations read
+   */
+  Set<Integer> getOrigins() {
+    return origins;
+  }
+
+  /**
+   * Gets the locations whose arrivals were read.
+   *
+   * @return a set of the ids of the locations read
+   */
+  Set<Integer> getDestinations() {
+    return destinations;
+  }
+
+  /**
+   * Gets whether the departures of every location were read.
+   *
+   * @return True if every location was read
+   */
+  boolean readAll() {
+    return all;
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> find(String origin, long lower, long upper) {
+    return find(Locations.findId(origin), lower, upper);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> find(String origin) {
+    return find(Locations.findId(origin));
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> find(int origin, long lower, long upper) {
+    read(origins, origin);
+    return index.find(origin, lower, upper);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> find(int origin) {
+    read(origins, origin);
+    return index.find(origin);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> findTo(String destination, long lower, long upper) {
+    return findTo(Locations.findId(destination), lower, upper);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> findTo(int destination, long lower, long upper) {
+    read(destinations, destination);
+    return index.findTo(destination, lower, upper);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> findAll(long lower) {
+    all = true;
+    return index.findAll(lower);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> findAll(long lower, long upper) {
+    all = true;
+    return index.findAll(lower, upper);
+  }
+
+  @Override
+  public Collection<List<SingleTravel>> findAllDescending() {
+    all = true;
+    return index.findAllDescending();
+  }
+
+  /**
+   * Records that the departures or arrivals of a location were read.
+   *
+   * @param read
+   *          the locations read, origins or destinations
+   * @param location
+   *          the id of the location read; -1 if it was never seen
+   */
+  private void read(Set<Integer> read, int location) {
+    if (location < 0) {
+      // a location without an id yet may get travels later, under any id
+      all = true;
+    } else {
+      read.add(location);
+    }
+  }
+}
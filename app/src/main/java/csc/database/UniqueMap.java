@@ -2,15 +2,22 @@ package csc.database;
 
 import csc.interfaces.Identifiable;
 import csc.interfaces.Updatable;
+import csc.util.Constants;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A sorted map that maps an identifier to an identifiable and updatable object.
+ * Can be used from multiple threads at once: lookups never wait, and each
+ * change holds the lock of the stripe of its key, so changes to different keys
+ * rarely wait for each other. Iterating sees the objects as they are during
+ * the iteration.
  *
  * @param <K>
  *          the identifier that will be sorted against
@@ -26,11 +33,15 @@ public abstract class UniqueMap<K extends Comparable<K> & Serializable,
   /**
    * The map for implementing this class.
    */
-  private final Map<K, V> map;
+  private Map<K, V> map;
+  /**
+   * The locks of the keys, by the hash of the key.
+   */
+  private transient Object[] locks;
 
   protected UniqueMap() {
-    this.map = new HashMap<>();
-    // You could also use a TreeMap, but it's not needed
+    this.map = new ConcurrentHashMap<>();
+    this.locks = newLocks();
   }
 
   /**
@@ -62,14 +73,17 @@ public abstract class UniqueMap<K extends Comparable<K> & Serializable,
    *         returns val
    */
   public V add(V val) {
-    V ret = map.get(val.getIdentifier());
-    if (ret != null) {
-      ret.update(val);
-    } else {
-      map.put(val.getIdentifier(), val);
-      ret = val;
+    K id = val.getIdentifier();
+    synchronized (lockFor(id)) {
+      V ret = map.get(id);
+      if (ret != null) {
+        ret.update(val);
+      } else {
+        map.put(id, val);
+        ret = val;
+      }
+      return ret;
     }
-    return ret;
   }
 
   /**
@@ -81,12 +95,20 @@ public abstract class UniqueMap<K extends Comparable<K> & Serializable,
    *          the identifier to change to
    */
   public void changeId(V val, K newId) {
-    if (containsId(newId)) {
-      return;
+    K oldId = val.getIdentifier();
+    int first = stripe(oldId);
+    int second = stripe(newId);
+    // always locked in the same order, so two changes cannot wait on each other
+    synchronized (locks[Math.min(first, second)]) {
+      synchronized (locks[Math.max(first, second)]) {
+        if (containsId(newId)) {
+          return;
+        }
+        remove(oldId);
+        val.setIdentifier(newId);
+        add(val);
+      }
     }
-    map.remove(val.getIdentifier());
-    val.setIdentifier(newId);
-    add(val);
   }
 
   /**
@@ -109,7 +131,9 @@ public abstract class UniqueMap<K extends Comparable<K> & Serializable,
    */
   public void remove(K id) {
     if (id != null) {
-      map.remove(id);
+      synchronized (lockFor(id)) {
+        map.remove(id);
+      }
     }
   }
 
@@ -138,4 +162,61 @@ public abstract class UniqueMap<K extends Comparable<K> & Serializable,
   public Iterator<V> iterator() {
     return map.values().iterator();
   }
+
+  /**
+   * Gets the lock held while changing the object of an id.
+   *
+   * @param id
+   *          the id of the object
+   * @return the lock of the stripe of id
+   */
+  private Object lockFor(K id) {
+    return locks[stripe(id)];
+  }
+
+  /**
+   * Gets the stripe of an id.
+   *
+   * @param id
+   *          the id to find
+   * @return the index of the lock of id
+   */
+  private int stripe(K id) {
+    int hash = id.hashCode();
+    // spread the high bits, which the mask would otherwise ignore
+    hash ^= hash >>> 16;
+    return hash & (locks.length - 1);
+  }
+
+  /**
+   * Creates the locks of the stripes.
+   *
+   * @return a new lock for each stripe
+   */
+  private static Object[] newLocks() {
+    Object[] locks = new Object[Constants.LOCK_STRIPES];
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+    return locks;
+  }
+
+  /**
+   * Reads this database, with new locks. Databases saved before it could be
+   * used concurrently are copied into a concurrent map.
+   *
+   * @param in
+   *          the stream to read from
+   * @throws IOException
+   *           if the stream could not be read
+   * @throws ClassNotFoundException
+   *           if a class of this database could not be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    if (!(map instanceof ConcurrentHashMap)) {
+      map = new ConcurrentHashMap<>(map);
+    }
+    locks = newLocks();
+  }
 }
@@ -0,0 +1,33 @@
+package csc.interfaces;
+
+/**
+ * An interface for objects that are told when a user books an itinerary or
+ * stops booking it.
+ *
+ * @param <U>
+ *          the type of the user booking
+ * @param <I>
+ *          the type of the itinerary booked
+ */
+public interface BookingListener<U, I> {
+
+  /**
+   * Called after user books itinerary.
+   *
+   * @param user
+   *          the user who booked
+   * @param itinerary
+   *          the itinerary booked
+   */
+  public void booked(U user, I itinerary);
+
+  /**
+   * Called after user stops booking itinerary.
+   *
+   * @param user
+   *          the user who stopped booking
+   * @param itinerary
+   *          the itinerary no longer booked
+   */
+  public void unbooked(U user, I itinerary);
+}
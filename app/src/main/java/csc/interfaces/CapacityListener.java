@@ -0,0 +1,19 @@
+package csc.interfaces;
+
+/**
+ * An interface for objects that are told when another object becomes full or
+ * stops being full.
+ *
+ * @param <T>
+ *          the type of the object with a capacity
+ */
+public interface CapacityListener<T> {
+
+  /**
+   * Called after source becomes full, or stops being full.
+   *
+   * @param source
+   *          the object whose capacity changed
+   */
+  public void capacityChanged(T source);
+}
@@ -0,0 +1,64 @@
+package csc.interfaces;
+
+/**
+ * An interface for objects that are told of every change made to a database,
+ * in the order they are made.
+ *
+ * @param <T>
+ *          the type of the travels
+ * @param <U>
+ *          the type of the users
+ * @param <I>
+ *          the type of the itineraries booked
+ */
+public interface DatabaseListener<T, U, I> extends BookingListener<U, I> {
+
+  /**
+   * Called after travel is added, or replaces the travel with its id.
+   *
+   * @param travel
+   *          the travel as it is stored
+   */
+  public void travelAdded(T travel);
+
+  /**
+   * Called after travel is removed.
+   *
+   * @param travel
+   *          the travel removed
+   */
+  public void travelRemoved(T travel);
+
+  /**
+   * Called after the id of travel changes.
+   *
+   * @param travel
+   *          the travel, with its new id
+   * @param oldId
+   *          the id travel had
+   */
+  public void travelRenamed(T travel, String oldId);
+
+  /**
+   * Called after user is added, or the user with its id is updated.
+   *
+   * @param user
+   *          the user as it is stored
+   */
+  public void userAdded(U user);
+
+  /**
+   * Called after the id of user changes.
+   *
+   * @param user
+   *          the user, with its new id
+   * @param oldId
+   *          the id user had
+   */
+  public void userRenamed(U user, String oldId);
+
+  /**
+   * Called after every travel and user is removed.
+   */
+  public void cleared();
+}
@@ -0,0 +1,118 @@
+package csc.interfaces;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An interface for objects that find travels by their origin or destination
+ * and departure time, without changing them. Travels sharing a departure time
+ * are found in one group, and groups are found in order of departure.
+ *
+ * @param <T>
+ *          the type of the travels
+ */
+public interface DepartureSource<T> {
+
+  /**
+   * Gets the travels originating from a location that depart between two
+   * times, inclusively, in order of departure.
+   *
+   * @param origin
+   *          the location to depart from
+   * @param lower
+   *          the earliest departure time, in milliseconds
+   * @param upper
+   *          the latest departure time, in milliseconds
+   * @return the groups of travels sharing a departure time, in order
+   */
+  public Collection<List<T>> find(String origin, long lower, long upper);
+
+  /**
+   * Gets the travels originating from a location that depart between two
+   * times, inclusively, in order of departure.
+   *
+   * @param origin
+   *          the id of the location to depart from
+   * @param lower
+   *          the earliest departure time, in milliseconds
+   * @param upper
+   *          the latest departure time, in milliseconds
+   * @return the groups of travels sharing a departure time, in order
+   */
+  public Collection<List<T>> find(int origin, long lower, long upper);
+
+  /**
+   * Gets all travels originating from a location, in order of departure.
+   *
+   * @param origin
+   *          the location to depart from
+   * @return the groups of travels sharing a departure time, in order
+   */
+  public Collection<List<T>> find(String origin);
+
+  /**
+   * Gets all travels originating from a location, in order of departure.
+   *
+   * @param origin
+   *          the id of the location to depart from
+   * @return the groups of travels sharing a departure time, in order
+   */
+  public Collection<List<T>> find(int origin);
+
+  /**
+   * Gets the travels arriving at a location that depart between two times,
+   * inclusively, in order of departure.
+   *
+   * @param destination
+   *          the location to arrive at
+   * @param lower
+   *          the earliest departure time, in milliseconds
+   * @param upper
+   *          the latest departure time, in milliseconds
+   * @return the groups of travels sharing a departure time, in order
+   */
+  public Collection<List<T>> findTo(String destination, long lower, long upper);
+
+  /**
+   * Gets the travels arriving at a location that depart between two times,
+   * inclusively, in order of departure.
+   *
+   * @param destination
+   *          the id of the location to arrive at
+   * @param lower
+   *          the earliest departure time, in milliseconds
+   * @param upper
+   *          the latest departure time, in milliseconds
+   * @return the groups of travels sharing a departure time, in order
+   */
+  public Collection<List<T>> findTo(int destination, long lower, long upper);
+
+  /**
+   * Gets the travels from every location that depart at or after a time, in
+   * order of departure.
+   *
+   * @param lower
+   *          the earliest departure time, in milliseconds
+   * @return the groups of travels sharing a departure time, in order
+   */
+  public Collection<List<T>> findAll(long lower);
+
+  /**
+   * Gets the travels from every location that depart between two times,
+   * inclusively, in order of departure.
+   *
+   * @param lower
+   *          the earliest departure time, in milliseconds
+   * @param upper
+   *          the latest departure time, in milliseconds
+   * @return the groups of travels sharing a departure time, in order
+   */
+  public Collection<List<T>> findAll(long lower, long upper);
+
+  /**
+   * Gets the travels from every location, in reverse order of departure.
+   *
+   * @return the groups of travels sharing a departure time, latest first
+   */
+  public Collection<List<T>> findAllDescending();
+}
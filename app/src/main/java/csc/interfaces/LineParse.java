@@ -10,13 +10,16 @@ import java.text.ParseException;
  */
 public interface LineParse<T> {
   /**
-   * Creates a new object of the appropriate type, from the file.
+   * Creates a new object of the appropriate type, from the file. The arguments
+   * may be reused after this returns, so they must be copied to be kept.
    *
+   * @param args
+   *          the fields of the object
    * @return a new object of the appropriate type
    * @throws ParseException
    *           when a date argument is invalid
    */
-  public T create(String... args) throws ParseException;
+  public T create(CharSequence... args) throws ParseException;
 
   /**
    * Gets the number of arguments expected for parsing from a file.
@@ -28,9 +31,9 @@ public interface LineParse<T> {
   /**
    * Gets the delimiter for parsing the line.
    *
-   * @return the delimiter
+   * @return the character between fields
    */
-  public String getDelimiter();
+  public char getDelimiter();
 
   /**
    * Gets whether this is usable or not.
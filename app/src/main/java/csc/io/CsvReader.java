@@ -0,0 +1,324 @@
+package csc.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads records of delimited fields from a stream, one record at a time. A
+ * field may be quoted with '"' to contain the delimiter, line breaks, or a
+ * quote written twice. Like String.split, empty fields at the end of a record
+ * are dropped unless they are quoted. Lines may end in "\n", "\r\n" or "\r".
+ *
+ * <p>The characters of every record are kept in the same buffers, so the
+ * fields of a record are only valid until the next one is read.
+ */
+public class CsvReader implements Closeable {
+  /**
+   * The amount of characters to read from the stream at once.
+   */
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * The stream to read from.
+   */
+  private final Reader in;
+  /**
+   * The character that separates fields.
+   */
+  private final char delimiter;
+  /**
+   * The characters read from the stream but not parsed yet.
+   */
+  private final char[] buffer;
+  /**
+   * The index of the next character to parse in buffer.
+   */
+  private int pos = 0;
+  /**
+   * The amount of characters in buffer.
+   */
+  private int limit = 0;
+  /**
+   * Whether a "\r" just ended a record, so a "\n" after it is skipped.
+   */
+  private boolean skipNewline = false;
+
+  /**
+   * The characters of the fields of the current record, one after the other.
+   */
+  private char[] chars;
+  /**
+   * The amount of characters in chars.
+   */
+  private int length = 0;
+  /**
+   * The index in chars after the end of each field.
+   */
+  private int[] ends;
+  /**
+   * Whether each field was quoted.
+   */
+  private boolean[] quoted;
+  /**
+   * The amount of fields in the current record.
+   */
+  private int count = 0;
+  /**
+   * The view of each field of the current record.
+   */
+  private Field[] views;
+  /**
+   * The last array of fields returned, to reuse for records of the same size.
+   */
+  private CharSequence[] fields;
+
+  /**
+   * Creates a reader of records.
+   *
+   * @param in
+   *          the stream to read from
+   * @param delimiter
+   *          the character that separates fields
+   */
+  public CsvReader(Reader in, char delimiter) {
+    this.in = in;
+    this.delimiter = delimiter;
+    this.buffer = new char[BUFFER_SIZE];
+    this.chars = new char[128];
+    this.ends = new int[16];
+    this.quoted = new boolean[16];
+    this.views = new Field[0];
+    this.fields = new CharSequence[0];
+  }
+
+  /**
+   * Reads the next record.
+   *
+   * @return True if a record was read; false at the end of the stream
+   * @throws IOException
+   *           if the stream could not be read
+   */
+  public boolean next() throws IOException {
+    length = 0;
+    count = 0;
+    if (skipNewline && fill() && buffer[pos] == '\n') {
+      pos++;
+    }
+    skipNewline = false;
+    if (!fill()) {
+      return false;
+    }
+
+    boolean inQuotes = false;
+    boolean fieldQuoted = false;
+    boolean delimited = false;
+    while (fill()) {
+      char ch = buffer[pos++];
+      if (inQuotes) {
+        if (ch != '"') {
+          append(ch);
+        } else if (fill() && buffer[pos] == '"') { // an escaped quote
+          append('"');
+          pos++;
+        } else {
+          inQuotes = false;
+        }
+      } else if (ch == '"' && !fieldQuoted && length == fieldStart()) {
+        inQuotes = true;
+        fieldQuoted = true;
+      } else if (ch == delimiter) {
+        endField(fieldQuoted);
+        fieldQuoted = false;
+        delimited = true;
+      } else if (ch == '\n' || ch == '\r') {
+        skipNewline = ch == '\r';
+        break;
+      } else {
+        append(ch);
+      }
+    }
+    endField(fieldQuoted);
+
+    // like String.split, trailing empty fields are dropped, so a record of only
+    // delimiters has none; an empty line is still one empty field
+    int least = delimited ? 0 : 1;
+    while (count > least && !quoted[count - 1] && ends[count - 1] == fieldStart(count - 1)) {
+      count--;
+    }
+    return true;
+  }
+
+  /**
+   * Gets the amount of fields in the current record.
+   *
+   * @return the amount of fields
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Gets a field of the current record, which is only valid until the next
+   * record is read.
+   *
+   * @param index
+   *          the index of the field
+   * @return the characters of the field
+   */
+  public CharSequence get(int index) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException("Field " + index + " of " + count + ".");
+    }
+    if (views.length <= index) {
+      int old = views.length;
+      views = Arrays.copyOf(views, Math.max(count, index + 1));
+      for (int i = old; i < views.length; i++) {
+        views[i] = new Field(i);
+      }
+    }
+    return views[index];
+  }
+
+  /**
+   * Gets every field of the current record. The array and its fields are only
+   * valid until the next record is read.
+   *
+   * @return an array of the fields, in order
+   */
+  public CharSequence[] getFields() {
+    if (fields.length != count) {
+      fields = new CharSequence[count];
+    }
+    for (int i = 0; i < count; i++) {
+      fields[i] = get(i);
+    }
+    return fields;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Makes sure that there is a character to parse in the buffer.
+   *
+   * @return True if there is one; false at the end of the stream
+   * @throws IOException
+   *           if the stream could not be read
+   */
+  private boolean fill() throws IOException {
+    while (pos >= limit) {
+      int read = in.read(buffer, 0, buffer.length);
+      if (read < 0) {
+        return false;
+      }
+      pos = 0;
+      limit = read;
+    }
+    return true;
+  }
+
+  /**
+   * Adds a character to the current field.
+   *
+   * @param ch
+   *          the character to add
+   */
+  private void append(char ch) {
+    if (length == chars.length) {
+      chars = Arrays.copyOf(chars, chars.length * 2);
+    }
+    chars[length++] = ch;
+  }
+
+  /**
+   * Ends the current field.
+   *
+   * @param wasQuoted
+   *          whether the field was quoted
+   */
+  private void endField(boolean wasQuoted) {
+    if (count == ends.length) {
+      ends = Arrays.copyOf(ends, ends.length * 2);
+      quoted = Arrays.copyOf(quoted, quoted.length * 2);
+    }
+    ends[count] = length;
+    quoted[count] = wasQuoted;
+    count++;
+  }
+
+  /**
+   * Gets the index in chars of the start of the current field.
+   *
+   * @return the index the current field starts at
+   */
+  private int fieldStart() {
+    return fieldStart(count);
+  }
+
+  /**
+   * Gets the index in chars of the start of a field.
+   *
+   * @param index
+   *          the index of the field
+   * @return the index the field starts at
+   */
+  private int fieldStart(int index) {
+    return index == 0 ? 0 : ends[index - 1];
+  }
+
+  /**
+   * A view of a field of the current record.
+   */
+  private class Field implements CharSequence {
+    /**
+     * The index of the field.
+     */
+    private final int index;
+
+    /**
+     * Creates a view of a field.
+     *
+     * @param index
+     *          the index of the field
+     */
+    private Field(int index) {
+      this.index = index;
+    }
+
+    /**
+     * Gets the index in chars of the start of the field.
+     *
+     * @return the index the field starts at
+     */
+    private int start() {
+      return fieldStart(index);
+    }
+
+    @Override
+    public int length() {
+      return ends[index] - start();
+    }
+
+    @Override
+    public char charAt(int at) {
+      if (at < 0 || at >= length()) {
+        throw new IndexOutOfBoundsException("Character " + at + " of " + length() + ".");
+      }
+      return chars[start() + at];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return new String(chars, start(), length());
+    }
+  }
+}
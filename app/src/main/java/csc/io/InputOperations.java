@@ -3,20 +3,28 @@ package csc.io;
 import csc.interfaces.LineParse;
 import csc.util.Constants;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -55,8 +63,8 @@ public final class InputOperations {
    *          the path of the file
    * @param type
    *          the type of the objects
-   * @return a set containing all users parsed from the file. if the file does
-   *         not exist, an empty set is returned instead.
+   * @return a list of all objects parsed from the file, in order. if the file
+   *         does not exist, an empty list is returned instead.
    */
   public static <T, E extends LineParse<T>> Collection<T> parseData(String path, E type) {
     File file = new File(path);
@@ -67,48 +75,171 @@ public final class InputOperations {
         log.log(Level.SEVERE, e.toString(), e);
       }
     }
-    return Collections.emptySet();
+    return Collections.emptyList();
   }
 
   /**
    * Parses data from a given file, parsing objects line by line. The data
    * returned is of class T, and type is of class E, where E can parse lines to
-   * create T.
+   * create T. Fields may be quoted, as read by CsvReader.
    *
    * @param in
    *          the input stream
    * @param type
    *          the type of the objects
-   * @return a set containing all users parsed from the file
+   * @return a list of all objects parsed from the file, in order. A line that
+   *         is repeated is parsed each time, which updates the same object when
+   *         added to a database.
    */
   public static <T, E extends LineParse<T>> Collection<T> parseData(FileInputStream in,
       E type) {
-    Collection<T> ret = new LinkedHashSet<>();
+    List<T> ret = new ArrayList<>();
+    try {
+      parseRecords(in, type, ret);
+    } catch (IOException e) {
+      log.log(Level.SEVERE, e.toString(), e);
+    }
+    return ret;
+  }
+
+  /**
+   * Parses data from a given file path like parseData, but splits the file
+   * into chunks of whole lines and parses them on multiple threads. The file is
+   * memory-mapped instead of read through a stream. The objects are returned
+   * in the same order as parseData, so adding them in order gives the same
+   * result. A file with quoted fields, which may span lines, is parsed on one
+   * thread instead.
+   *
+   * @param path
+   *          the path of the file
+   * @param type
+   *          the type of the objects
+   * @param executor
+   *          the threads to parse the chunks on
+   * @return a list of all objects parsed from the file, in order. if the file
+   *         does not exist, an empty list is returned instead.
+   */
+  public static <T, E extends LineParse<T>> Collection<T> parseData(String path, E type,
+      ExecutorService executor) {
+    File file = new File(path);
+    if (!file.exists()) {
+      return Collections.emptyList();
+    }
+    List<Future<List<T>>> tasks = new ArrayList<>();
+    try (FileInputStream in = new FileInputStream(file);
+        FileChannel channel = in.getChannel()) {
+      long size = channel.size();
+      int chunks = (int) Math.min(Runtime.getRuntime().availableProcessors() * 4L,
+          size / Constants.IMPORT_CHUNK_SIZE);
+      if (chunks <= 1 || size > Integer.MAX_VALUE) {
+        return parseData(in, type);
+      }
 
-    // open the file for reading with the given path
+      MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      int start = 0;
+      for (int i = 1; i <= chunks && start < size; i++) {
+        // each chunk ends after a line, so no line is split
+        int end = i == chunks ? (int) size : nextLine(map, (int) (size * i / chunks));
+        ByteBuffer chunk = map.duplicate();
+        chunk.limit(end);
+        chunk.position(start);
+        tasks.add(executor.submit(new ChunkParser<>(chunk.slice(), type)));
+        start = end;
+      }
+
+      List<T> ret = new ArrayList<>();
+      for (Future<List<T>> task : tasks) {
+        List<T> found = task.get();
+        if (found == null) {
+          // quoted fields may span chunks
+          cancel(tasks);
+          return parseData(path, type);
+        }
+        ret.addAll(found);
+      }
+      return ret;
+    } catch (IOException e) {
+      cancel(tasks);
+      log.log(Level.SEVERE, e.toString(), e);
+    } catch (InterruptedException e) {
+      cancel(tasks);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while parsing data.", e);
+    } catch (ExecutionException e) {
+      cancel(tasks);
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Could not parse data.", e.getCause());
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * Parses every line of a stream.
+   *
+   * @param in
+   *          the stream to parse
+   * @param type
+   *          the type of the objects
+   * @param ret
+   *          the list to add the parsed objects to, in order
+   * @throws IOException
+   *           if the stream could not be read
+   */
+  private static <T, E extends LineParse<T>> void parseRecords(InputStream in, E type,
+      List<T> ret) throws IOException {
+    // open the stream for reading
     try (
         InputStreamReader isr = new InputStreamReader(in,
             Charset.forName(Constants.FILE_ENCODING));
-        BufferedReader reader = new BufferedReader(isr)) {
+        CsvReader reader = new CsvReader(isr, type.getDelimiter())) {
       // each line is one object
-      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-        String[] split = line.split(type.getDelimiter());
+      while (reader.next()) {
         try {
           // invalid input -- wrong number of arguments
-          if (split.length == type.getNumArguments()) {
-            ret.add(type.create(split));
+          if (reader.size() == type.getNumArguments()) {
+            ret.add(type.create(reader.getFields()));
           } else {
             log.log(Level.WARNING, "A line had {0} arguments, but expected was {1}. Skipping.",
-                new Object[] { split.length, type.getNumArguments() });
+                new Object[] { reader.size(), type.getNumArguments() });
           }
         } catch (ParseException e) {
           log.log(Level.SEVERE, "A line had incorrect arguments. Skipping.", e);
         }
       }
-    } catch (IOException e) {
-      log.log(Level.SEVERE, e.toString(), e);
     }
-    return ret;
+  }
+
+  /**
+   * Finds the start of the line after an index of a file.
+   *
+   * @param map
+   *          the contents of the file
+   * @param from
+   *          the index to start looking from
+   * @return the index after the next line break; the size of the file if there
+   *         is none
+   */
+  private static int nextLine(ByteBuffer map, int from) {
+    for (int i = from; i < map.limit(); i++) {
+      if (map.get(i) == '\n') {
+        return i + 1;
+      }
+    }
+    return map.limit();
+  }
+
+  /**
+   * Cancels every task that has not finished.
+   *
+   * @param tasks
+   *          the tasks to cancel
+   */
+  private static <T> void cancel(List<Future<List<T>>> tasks) {
+    for (Future<List<T>> task : tasks) {
+      task.cancel(true);
+    }
   }
 
   /**
@@ -200,4 +331,92 @@ public final class InputOperations {
       return input.getBytes(Constants.FILE_ENCODING);
     }
   }
+
+  /**
+   * Parses the lines of a chunk of a file.
+   *
+   * @param <T>
+   *          the type of the objects
+   */
+  private static class ChunkParser<T> implements Callable<List<T>> {
+    /**
+     * The bytes of the chunk.
+     */
+    private final ByteBuffer chunk;
+    /**
+     * The type of the objects.
+     */
+    private final LineParse<T> type;
+
+    /**
+     * Creates a parser of a chunk.
+     *
+     * @param chunk
+     *          the bytes of the chunk, from its position to its limit
+     * @param type
+     *          the type of the objects
+     */
+    private ChunkParser(ByteBuffer chunk, LineParse<T> type) {
+      this.chunk = chunk;
+      this.type = type;
+    }
+
+    /**
+     * Parses the chunk.
+     *
+     * @return a list of the objects parsed, in order; null if the chunk has a
+     *         quote, so it cannot be parsed alone
+     * @throws IOException
+     *           if the chunk could not be decoded
+     */
+    @Override
+    public List<T> call() throws IOException {
+      for (int i = chunk.position(); i < chunk.limit(); i++) {
+        if (chunk.get(i) == '"') {
+          return null;
+        }
+      }
+      List<T> ret = new ArrayList<>();
+      parseRecords(new ByteBufferInputStream(chunk), type, ret);
+      return ret;
+    }
+  }
+
+  /**
+   * A stream of the bytes of a buffer.
+   */
+  private static class ByteBufferInputStream extends InputStream {
+    /**
+     * The bytes left to read, from the position to the limit.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a stream of a buffer.
+     *
+     * @param buffer
+     *          the bytes to read, from its position to its limit
+     */
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, buffer.remaining());
+      buffer.get(bytes, off, count);
+      return count;
+    }
+  }
 }
@@ -0,0 +1,574 @@
+package csc.io;
+
+import csc.database.MainDatabase;
+import csc.interfaces.DatabaseListener;
+import csc.travel.Itinerary;
+import csc.travel.SingleTravel;
+import csc.users.RegisteredUser;
+import csc.users.User;
+import csc.util.Constants;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.Cipher;
+
+/**
+ * An append-only journal of the changes made to a database since its save file
+ * was written. Changes are recorded as they are made, and appended to the file
+ * as one encrypted entry each time the database is saved, so a save only costs
+ * as much as what changed. The journal belongs to the save file written with
+ * the same salt, and is only read on top of it. Replaying a change that the
+ * save file already contains changes nothing.
+ */
+public class Journal implements DatabaseListener<SingleTravel, RegisteredUser, Itinerary> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logger log = Logger.getLogger(Journal.class.getName());
+
+  /**
+   * Ends the changes of an entry.
+   */
+  private static final byte END = 0;
+  /**
+   * A travel was added or replaced, followed by the travel.
+   */
+  private static final byte TRAVEL = 1;
+  /**
+   * A travel was removed, followed by its type and id.
+   */
+  private static final byte TRAVEL_REMOVED = 2;
+  /**
+   * The id of a travel changed, followed by its type, old id and new id.
+   */
+  private static final byte TRAVEL_RENAMED = 3;
+  /**
+   * A user was added or updated, followed by the user.
+   */
+  private static final byte USER = 4;
+  /**
+   * The id of a user changed, followed by its old id and new id.
+   */
+  private static final byte USER_RENAMED = 5;
+  /**
+   * A user booked an itinerary, followed by the id of the user and the
+   * itinerary.
+   */
+  private static final byte BOOKED = 6;
+  /**
+   * A user stopped booking an itinerary, followed by the id of the user and the
+   * itinerary.
+   */
+  private static final byte UNBOOKED = 7;
+  /**
+   * Every travel and user was removed.
+   */
+  private static final byte CLEARED = 8;
+  /**
+   * The current user when saving, followed by its type and id.
+   */
+  private static final byte SESSION = 9;
+
+  /**
+   * The file of the journal.
+   */
+  private final File file;
+  /**
+   * The lock held while writing or reading the file, taken before the lock of
+   * the journal. The changes are recorded under the lock of the journal only,
+   * so that they are not held up by encryption and writing.
+   */
+  private final Object fileLock;
+  /**
+   * The changes recorded since the last entry was appended.
+   */
+  private final ByteArrayOutputStream pending;
+  /**
+   * The entries of the changes recorded before the save file was last
+   * written, to be appended to the file unless that save file was written.
+   */
+  private final List<byte[]> held;
+  /**
+   * The writer of the changes to pending; null if none were recorded.
+   */
+  private SaveWriter out = null;
+  /**
+   * The salt of the save file this journal belongs to; null if there is none.
+   */
+  private byte[] salt = null;
+  /**
+   * The amount of bytes in the file; 0 if it must be written again from the
+   * start.
+   */
+  private long length = 0;
+  /**
+   * The current user written in the last entry.
+   */
+  private String session = null;
+  /**
+   * Whether a change could not be recorded, so that the journal is missing it.
+   */
+  private boolean broken = false;
+
+  /**
+   * Creates a journal that does not belong to any save file yet.
+   *
+   * @param file
+   *          the file of the journal
+   */
+  public Journal(File file) {
+    this.file = file;
+    this.fileLock = new Object();
+    this.pending = new ByteArrayOutputStream();
+    this.held = new ArrayList<>();
+  }
+
+  /**
+   * Sets aside the changes recorded so far, before a save file is written.
+   * They are discarded once the save file is written and the journal starts
+   * over, and are appended as they are otherwise.
+   *
+   * @throws IOException
+   *           if the changes could not be ended
+   */
+  synchronized void checkpoint() throws IOException {
+    if (out != null) {
+      out.writeByte(END);
+      held.add(pending.toByteArray());
+      out = null;
+      pending.reset();
+    }
+  }
+
+  /**
+   * Starts the journal of a new save file, once it was written. The changes
+   * set aside before it was written are discarded, since it contains them,
+   * and the file is written again at the next flush.
+   *
+   * @param salt
+   *          the salt of the save file
+   */
+  public void start(byte[] salt) {
+    synchronized (fileLock) {
+      synchronized (this) {
+        this.salt = salt;
+        this.length = 0;
+        this.session = null;
+        this.broken = false;
+        held.clear();
+      }
+    }
+  }
+
+  /**
+   * Gets the amount of bytes in the journal, including the changes not
+   * appended yet.
+   *
+   * @return the size of the journal; Long.MAX_VALUE if it is missing a change
+   */
+  synchronized long size() {
+    if (broken || salt == null) {
+      return Long.MAX_VALUE;
+    }
+    long size = length + pending.size();
+    for (byte[] entry : held) {
+      size += entry.length;
+    }
+    return size;
+  }
+
+  /**
+   * Appends the changes recorded since the last flush to the file, with the
+   * current user. Does nothing if neither changed. The changes are taken out
+   * while the journal is locked, and are then encrypted and written while it
+   * records the next ones.
+   *
+   * @param user
+   *          the current user
+   * @throws IOException
+   *           if the file could not be written
+   * @throws GeneralSecurityException
+   *           if there was an error in encryption
+   */
+  public void flush(User user) throws IOException, GeneralSecurityException {
+    synchronized (fileLock) {
+      String current = user == null ? "" : user.getType().ordinal() + user.getIdentifier();
+      List<byte[]> entries;
+      byte[] key;
+      long at;
+      synchronized (this) {
+        if (salt == null) {
+          throw new IllegalStateException("The journal does not belong to a save file.");
+        }
+        if (out == null && held.isEmpty() && current.equals(session)) {
+          return;
+        }
+        try {
+          begin(SESSION);
+          SaveOperations.writeSession(out, user);
+          out.writeByte(END);
+          held.add(pending.toByteArray());
+          entries = new ArrayList<>(held);
+        } catch (IOException e) {
+          broken = true;
+          throw e;
+        } finally {
+          out = null;
+          pending.reset();
+          held.clear();
+        }
+        key = salt;
+        at = length;
+      }
+      try {
+        long written = append(key, at, entries);
+        synchronized (this) {
+          length += written;
+          session = current;
+        }
+      } catch (IOException | GeneralSecurityException e) {
+        synchronized (this) {
+          broken = true;
+        }
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Appends encrypted entries to the file, writing the header of the file
+   * first if it is started again.
+   *
+   * @param salt
+   *          the salt of the save file the journal belongs to
+   * @param length
+   *          the amount of bytes in the file; 0 to start it again
+   * @param entries
+   *          the changes of each entry
+   * @return the amount of bytes written
+   * @throws IOException
+   *           if the file could not be written
+   * @throws GeneralSecurityException
+   *           if there was an error in encryption
+   */
+  private long append(byte[] salt, long length, List<byte[]> entries)
+      throws IOException, GeneralSecurityException {
+    boolean fresh = length == 0;
+    try (DataOutputStream writer = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file, !fresh)))) {
+      if (fresh) {
+        // un-encrypted header, like the save file it belongs to
+        writer.write(Constants.DATABASE_VERSION);
+        writer.write(salt.length);
+        writer.write(salt);
+      }
+      for (byte[] changes : entries) {
+        Cipher enc = SaveOperations.getEncryptionCipher(salt, null);
+        byte[] encrypted = enc.doFinal(changes);
+        byte[] iv = enc.getIV();
+        writer.writeInt(1 + iv.length + encrypted.length);
+        writer.write(iv.length);
+        writer.write(iv);
+        writer.write(encrypted);
+      }
+      writer.flush();
+      return writer.size();
+    }
+  }
+
+  /**
+   * Applies the changes in the file to a database read from a save file, if
+   * the journal belongs to it. The journal then belongs to the save file, and
+   * an entry left incomplete by an interrupted flush is cut off.
+   *
+   * @param data
+   *          the database to apply the changes to
+   * @param salt
+   *          the salt of the save file read
+   * @param session
+   *          the current user saved in the save file; null if there was none
+   * @return the current user saved last; null if there was none
+   */
+  public User replay(MainDatabase data, byte[] salt, User session) {
+    synchronized (fileLock) {
+      start(salt);
+      long good = 0;
+      try (DataInputStream reader = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(file)))) {
+        byte[] header = new byte[salt.length];
+        if (reader.read() != Constants.DATABASE_VERSION || reader.read() != salt.length) {
+          return session; // written for an older save file, or another version
+        }
+        reader.readFully(header);
+        if (!Arrays.equals(header, salt)) {
+          return session;
+        }
+        good = 2 + salt.length;
+        while (true) {
+          int size;
+          try {
+            size = reader.readInt();
+          } catch (EOFException end) {
+            break;
+          }
+          byte[] entry = new byte[size];
+          reader.readFully(entry);
+          byte[] iv = Arrays.copyOfRange(entry, 1, 1 + entry[0]);
+          Cipher dec = SaveOperations.getEncryptionCipher(salt, iv);
+          byte[] changes = dec.doFinal(entry, 1 + iv.length, entry.length - 1 - iv.length);
+          session = apply(data, changes, session);
+          good += 4 + size;
+        }
+      } catch (FileNotFoundException e) {
+        return session; // nothing changed since the save file was written
+      } catch (IOException | GeneralSecurityException e) {
+        log.log(Level.WARNING, "Journal ends with an unreadable entry. Ignoring the rest.", e);
+      }
+      boolean cut = true;
+      if (good > 0 && file.length() > good) {
+        try (RandomAccessFile torn = new RandomAccessFile(file, "rw")) {
+          torn.setLength(good);
+        } catch (IOException e) {
+          log.log(Level.SEVERE, "Error cutting the journal.", e);
+          cut = false;
+        }
+      }
+      synchronized (this) {
+        length = cut ? good : 0;
+        broken = !cut;
+      }
+      return session;
+    }
+  }
+
+  /**
+   * Applies the changes of an entry to a database.
+   *
+   * @param data
+   *          the database to apply the changes to
+   * @param changes
+   *          the decrypted changes of the entry
+   * @param session
+   *          the current user before the entry
+   * @return the current user after the entry
+   * @throws IOException
+   *           if the changes could not be read
+   */
+  private static User apply(MainDatabase data, byte[] changes, User session)
+      throws IOException {
+    SaveReader in = new SaveReader(new ByteArrayInputStream(changes));
+    for (byte op = in.readByte(); op != END; op = in.readByte()) {
+      switch (op) {
+        case TRAVEL:
+          data.addTravel(in.readTravel());
+          break;
+        case TRAVEL_REMOVED:
+          data.removeTravel(in.readTravelType(), in.readString());
+          break;
+        case TRAVEL_RENAMED: {
+          SingleTravel st = data.getTravel(in.readTravelType(), in.readString());
+          String id = in.readString();
+          if (st != null) {
+            data.changeIdentifier(st, id);
+          }
+          break;
+        }
+        case USER: {
+          RegisteredUser ru = in.readUser();
+          RegisteredUser stored = data.getUser(ru.getIdentifier());
+          if (stored != null) {
+            // an update keeps the type, which may have been edited
+            stored.setType(ru.getType());
+          }
+          data.addUser(ru);
+          break;
+        }
+        case USER_RENAMED: {
+          RegisteredUser ru = data.getUser(in.readString());
+          String id = in.readString();
+          if (ru != null) {
+            data.changeEmail(ru, id);
+          }
+          break;
+        }
+        case BOOKED: {
+          RegisteredUser ru = data.getUser(in.readString());
+          Itinerary it = in.readItinerary(data);
+          if (ru != null && it != null) {
+            ru.bookItinerary(it);
+          }
+          break;
+        }
+        case UNBOOKED: {
+          RegisteredUser ru = data.getUser(in.readString());
+          // its travels may be full, so it cannot be built again; it is found
+          Itinerary it = findBooked(ru, in.readTravels(data));
+          if (it != null) {
+            ru.removeItinerary(it);
+          }
+          break;
+        }
+        case CLEARED:
+          data.clear();
+          break;
+        case SESSION:
+          session = SaveOperations.restoreSession(data, in.readByte(), in.readString());
+          break;
+        default:
+          throw new IOException("Unknown change " + op + " in the journal.");
+      }
+    }
+    return session;
+  }
+
+  /**
+   * Finds the itinerary a user booked with exactly the given travels.
+   *
+   * @param ru
+   *          the user who booked; may be null
+   * @param travels
+   *          the travels of the itinerary, in order
+   * @return the booked itinerary; null if there is none
+   */
+  private static Itinerary findBooked(RegisteredUser ru, List<SingleTravel> travels) {
+    if (ru == null) {
+      return null;
+    }
+    for (Itinerary it : ru.getBookedItineraries()) {
+      if (it.size() == travels.size() && new ArrayList<>(it.getTravels()).equals(travels)) {
+        return it;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public synchronized void travelAdded(SingleTravel travel) {
+    try {
+      begin(TRAVEL);
+      out.writeTravel(travel);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  @Override
+  public synchronized void travelRemoved(SingleTravel travel) {
+    try {
+      begin(TRAVEL_REMOVED);
+      out.writeByte(travel.getType().ordinal());
+      out.writeString(travel.getIdentifier());
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  @Override
+  public synchronized void travelRenamed(SingleTravel travel, String oldId) {
+    try {
+      begin(TRAVEL_RENAMED);
+      out.writeByte(travel.getType().ordinal());
+      out.writeString(oldId);
+      out.writeString(travel.getIdentifier());
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  @Override
+  public synchronized void userAdded(RegisteredUser user) {
+    try {
+      begin(USER);
+      out.writeUser(user);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  @Override
+  public synchronized void userRenamed(RegisteredUser user, String oldId) {
+    try {
+      begin(USER_RENAMED);
+      out.writeString(oldId);
+      out.writeString(user.getIdentifier());
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  @Override
+  public synchronized void booked(RegisteredUser user, Itinerary itinerary) {
+    try {
+      begin(BOOKED);
+      out.writeString(user.getIdentifier());
+      out.writeItinerary(itinerary);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  @Override
+  public synchronized void unbooked(RegisteredUser user, Itinerary itinerary) {
+    try {
+      begin(UNBOOKED);
+      out.writeString(user.getIdentifier());
+      out.writeItinerary(itinerary);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  @Override
+  public synchronized void cleared() {
+    try {
+      begin(CLEARED);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Starts recording a change.
+   *
+   * @param op
+   *          the kind of change
+   * @throws IOException
+   *           if the change could not be written
+   */
+  private void begin(byte op) throws IOException {
+    if (out == null) {
+      out = new SaveWriter(pending);
+    }
+    out.writeByte(op);
+  }
+
+  /**
+   * Records that a change could not be recorded, so that the save file is
+   * written again at the next save.
+   *
+   * @param e
+   *          the error recording the change
+   */
+  private void fail(IOException e) {
+    log.log(Level.SEVERE, "Error recording a change in the journal.", e);
+    broken = true;
+  }
+}
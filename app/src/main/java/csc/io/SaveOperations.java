@@ -9,6 +9,7 @@ import csc.travel.SingleTravel;
 import csc.travel.TravelType;
 import csc.users.GuestUser;
 import csc.users.RegisteredUser;
+import csc.users.User;
 import csc.users.UserType;
 import csc.util.Constants;
 
@@ -20,34 +21,56 @@ import java.io.DataInput;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
-import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 /**
- * A class for internally loading and saving progress.
+ * A class for internally loading and saving progress. The whole database is
+ * only written to the save file once in a while; the saves in between append
+ * the changes made since to a journal, which is read on top of the save file.
  */
 public class SaveOperations {
   /**
    * The logger for this class.
    */
   private static final Logger log = Logger.getLogger(SaveOperations.class.getName());
+  /**
+   * The version of the save files written with Java serialization, by the
+   * first release, which are still read, and then written again in the
+   * current format.
+   */
+  private static final int SERIALIZED_VERSION = 1;
+  /**
+   * The suffix of the file the save file is written to before it replaces
+   * the save file.
+   */
+  private static final String TEMP_SUFFIX = ".tmp";
 
   /**
    * The internal storage database.
    */
   private final DatabaseOperations storage;
+  /**
+   * The changes made since the save file was written.
+   */
+  private final Journal journal;
+  /**
+   * The amount of bytes in the save file; 0 if it was not written or read yet.
+   */
+  private long saveSize = 0;
 
   /**
    * Initializes the save database with a connection to the Android database.
@@ -57,21 +80,42 @@ public class SaveOperations {
    */
   public SaveOperations(Context context) {
     this.storage = new DatabaseOperations(context);
+    this.journal = new Journal(context.getFileStreamPath(Constants.JOURNAL_FILE));
   }
 
   /**
-   * Serializes the database to a file and a database.
+   * Saves the changes made to the database since the last save, by appending
+   * them to the journal. The whole database is serialized to a file and a
+   * database instead once the journal is larger than that would be, and the
+   * journal then starts over.
    *
    * @param uc
    *          the application to write
    */
-  public void serializeDatabase(UserControl uc) {
+  public synchronized void serializeDatabase(UserControl uc) {
+    try {
+      if (saveSize > 0
+          && journal.size() < Math.max(saveSize, Constants.JOURNAL_COMPACT_SIZE)) {
+        journal.flush(uc.getUser());
+        return;
+      }
+    } catch (IOException | GeneralSecurityException e) {
+      log.log(Level.SEVERE, "Error writing the journal. Serializing everything.", e);
+    }
     // truncate the file by default.
     try {
-      byte[] bytes = serializeToBytes(uc);
+      byte[] salt = generateSalt();
+      // changes from now on may be missing from the file, so they are recorded
+      // for the new journal; the journal is only started over once the file
+      // replaced the old one, which it belongs to until then
+      journal.checkpoint();
+      byte[] bytes = serializeToBytes(uc, salt);
 
       writeBytesToFile(bytes, uc, Constants.SAVE_FILE);
       storage.insertEntry(bytes);
+      saveSize = bytes.length;
+      journal.start(salt);
+      journal.flush(uc.getUser());
 
     } catch (IOException | GeneralSecurityException e) {
       log.log(Level.SEVERE, "Error serializing.", e);
@@ -79,7 +123,9 @@ public class SaveOperations {
   }
 
   /**
-   * Writes a byte array to a save file.
+   * Writes a byte array to a save file. It is written to another file first,
+   * which then replaces the save file, so that the save file is never left
+   * half written.
    *
    * @param data
    *          the byte array to write
@@ -87,14 +133,21 @@ public class SaveOperations {
    *          the Android context
    * @param path
    *          the path of the file
+   * @throws IOException
+   *           if the file could not be written or replaced
    */
-  private static void writeBytesToFile(byte[] data, Context context, String path) {
-    try (FileOutputStream out = context.openFileOutput(path, Context.MODE_PRIVATE);
+  private static void writeBytesToFile(byte[] data, Context context, String path)
+      throws IOException {
+    String temp = path + TEMP_SUFFIX;
+    try (FileOutputStream out = context.openFileOutput(temp, Context.MODE_PRIVATE);
         BufferedOutputStream writer = new BufferedOutputStream(out)) {
 
       writer.write(data);
-    } catch (IOException e) {
-      log.log(Level.SEVERE, "Error writing bytes to file.", e);
+      writer.flush();
+      out.getFD().sync();
+    }
+    if (!context.getFileStreamPath(temp).renameTo(context.getFileStreamPath(path))) {
+      throw new IOException("Could not replace the save file.");
     }
   }
 
@@ -103,94 +156,107 @@ public class SaveOperations {
    *
    * @param uc
    *          the database to serialize
+   * @param salt
+   *          the salt to encrypt with
    * @return a byte array representing the database
    * @throws IOException
    *           if there was an error in closing
    * @throws GeneralSecurityException
    *           if there was an error in encryption
    */
-  private static byte[] serializeToBytes(UserControl uc)
+  private static byte[] serializeToBytes(UserControl uc, byte[] salt)
       throws IOException, GeneralSecurityException {
-
-    MainDatabase data = uc.getDatabase();
-    try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        BufferedOutputStream writer = new BufferedOutputStream(bos)) {
-
-      byte[] salt = generateSalt();
-      Cipher enc = getEncryptionCipher(salt, null);
+    Cipher enc = getEncryptionCipher(salt, null);
+    byte[] encrypted = enc.doFinal(writeRecords(uc.getDatabase(), uc.getUser()));
+    try (ByteArrayOutputStream bos = new ByteArrayOutputStream(
+        3 + salt.length + enc.getIV().length + encrypted.length)) {
       // un-encrypted header (necessary information for decryption)
-      writer.write(Constants.DATABASE_VERSION);
-      writer.write(salt.length);
-      writer.write(salt);
-      writer.write(enc.getIV().length);
-      writer.write(enc.getIV());
-
-      try (ObjectOutputStream oos = new ObjectOutputStream(
-          new CipherOutputStream(writer, enc))) {
-        // if we need any settings, write them here
-        if (uc.getUser() != null) {
-          oos.writeByte(uc.getUser().getType().ordinal());
-          oos.writeUTF(uc.getUser().getIdentifier());
-        } else {
-          oos.writeByte(-1);
-          oos.writeUTF("");
-        }
+      bos.write(Constants.DATABASE_VERSION);
+      bos.write(salt.length);
+      bos.write(salt);
+      bos.write(enc.getIV().length);
+      bos.write(enc.getIV());
+      bos.write(encrypted);
+      return bos.toByteArray();
+    }
+  }
 
-        // write the travel database
-        oos.writeByte(TravelType.values().length);
-        for (TravelType tt : TravelType.values()) {
-          // we don't directly serialize the collection because
-          // MainDatabase indexes the origins
-          // so each SingleTravel must be added one by one on reading
-          Collection<SingleTravel> travels = data.getAllTravels(tt);
-          oos.writeInt(travels.size());
-          for (SingleTravel st : travels) {
-            oos.writeObject(st);
-          }
-        }
+  /**
+   * Writes a database and the current user in the current format, before
+   * encryption.
+   *
+   * @param data
+   *          the database to write
+   * @param user
+   *          the current user; null if there is none
+   * @return the bytes written
+   * @throws IOException
+   *           if an error occurred during writing
+   */
+  public static byte[] writeRecords(MainDatabase data, User user) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    SaveWriter out = new SaveWriter(body);
+    // if we need any settings, write them here
+    writeSession(out, user);
+
+    // write the travel database
+    out.writeByte(TravelType.values().length);
+    for (TravelType tt : TravelType.values()) {
+      // we don't directly serialize the collection because
+      // MainDatabase indexes the origins
+      // so each SingleTravel must be added one by one on reading
+      Collection<SingleTravel> travels = data.getAllTravels(tt);
+      out.writeVarInt(travels.size());
+      for (SingleTravel st : travels) {
+        out.writeTravel(st);
+      }
+    }
 
-        // write the user database
-        oos.writeInt(data.getAllUsers().size());
-        for (RegisteredUser ru : data.getAllUsers()) {
-          // we don't want to directly serialize the itineraries because we want
-          // to strictly check them to make sure they're valid
-          // plus, we can use the existing TravelDatabase to avoid conflicts
-          // with equals() and hashCode() for itineraries
-          oos.writeObject(ru);
-
-          oos.writeInt(ru.getBookedItineraries().size());
-          for (Itinerary it : ru.getBookedItineraries()) {
-            oos.writeInt(it.size());
-            for (SingleTravel st : it.getTravels()) {
-              oos.writeByte(st.getType().ordinal());
-              oos.writeUTF(st.getIdentifier());
-            }
-          }
-        }
+    // write the user database
+    Collection<RegisteredUser> users = data.getAllUsers();
+    out.writeVarInt(users.size());
+    for (RegisteredUser ru : users) {
+      // we don't want to directly serialize the itineraries because we want
+      // to strictly check them to make sure they're valid
+      // plus, we can use the existing TravelDatabase to avoid conflicts
+      // with equals() and hashCode() for itineraries
+      out.writeUser(ru);
+
+      List<Itinerary> booked = new ArrayList<>(ru.getBookedItineraries());
+      out.writeVarInt(booked.size());
+      for (Itinerary it : booked) {
+        out.writeItinerary(it);
       }
-      return bos.toByteArray();
     }
+
+    return body.toByteArray();
   }
 
   /**
    * Deserializes the database from a file. If the file cannot be read, a
-   * database is read from.
+   * database is read from. The changes in the journal are then applied, and
+   * changes from then on are recorded in it.
    *
    * @param uc
    *          the application to deserialize
    */
-  public void deserializeDatabase(UserControl uc) {
+  public synchronized void deserializeDatabase(UserControl uc) {
     try {
       byte[] bytes = readBytesFromFile(uc, Constants.SAVE_FILE);
       if (bytes == null) {
         bytes = storage.getLastEntry();
       }
       if (bytes != null) {
-        deserializeFromBytes(uc, bytes);
+        byte[] salt = deserializeFromBytes(uc, bytes);
+        if (salt != null) {
+          saveSize = bytes.length;
+          uc.setUser(journal.replay(uc.getDatabase(), salt, uc.getUser()));
+        }
       }
     } catch (IOException | GeneralSecurityException | ClassNotFoundException e) {
       log.log(Level.SEVERE, "Error deserializing.", e);
     }
+    uc.getDatabase().setListener(journal);
   }
 
   /**
@@ -223,6 +289,8 @@ public class SaveOperations {
    *          the database to input the information into
    * @param in
    *          the byte array to read from
+   * @return the salt the byte array was encrypted with; null if it was not
+   *         read, or must be written again in the current format
    * @throws IOException
    *           if there was an error in reading
    * @throws GeneralSecurityException
@@ -230,63 +298,187 @@ public class SaveOperations {
    * @throws ClassNotFoundException
    *           if there was an error in compatibility
    */
-  private static void deserializeFromBytes(UserControl uc, byte[] in)
+  private static byte[] deserializeFromBytes(UserControl uc, byte[] in)
       throws IOException, GeneralSecurityException, ClassNotFoundException {
-    MainDatabase data = uc.getDatabase();
     try (ByteArrayInputStream bis = new ByteArrayInputStream(in);
         BufferedInputStream reader = new BufferedInputStream(bis)) {
 
-      if (reader.read() != Constants.DATABASE_VERSION) {
+      int version = reader.read();
+      if (version != Constants.DATABASE_VERSION && version != SERIALIZED_VERSION) {
         // abort; likely changed version
-        return;
+        return null;
       }
       // un-encrypted header (salt and iv necessary for decryption)
       byte[] salt = new byte[reader.read()];
       if (reader.read(salt) != salt.length) {
-        return;
+        return null;
       }
       byte[] iv = new byte[reader.read()];
       if (reader.read(iv) != iv.length) {
-        return;
+        return null;
       }
       Cipher enc = getEncryptionCipher(salt, iv);
 
-      try (CipherInputStream cis = new CipherInputStream(reader, enc);
-          ObjectInputStream ois = new ObjectInputStream(cis)) {
+      if (version == SERIALIZED_VERSION) {
+        uc.setUser(deserializeObjects(uc.getDatabase(), new CipherInputStream(reader, enc)));
+        return null;
+      }
+      int header = 3 + salt.length + iv.length;
+      uc.setUser(readRecords(uc.getDatabase(), enc.doFinal(in, header, in.length - header)));
+      return salt;
+    }
+  }
+
+  /**
+   * Reads a database and the current user written in the current format,
+   * after decryption.
+   *
+   * @param data
+   *          the database to input the information into
+   * @param body
+   *          the bytes to read
+   * @return the user that was current; null if there was none
+   * @throws IOException
+   *           if there was an error in reading
+   */
+  public static User readRecords(MainDatabase data, byte[] body) throws IOException {
+    SaveReader records = new SaveReader(new ByteArrayInputStream(body));
+    // if we need any settings, read them here
+    final byte type = records.readByte();
+    final String user = records.readString();
+
+    // read the travel database
+    int count = records.readByte();
+    for (int i = 0; i < count; i++) {
+      int size = records.readVarInt();
+      ArrayList<SingleTravel> travels = new ArrayList<>(size);
+      for (int j = 0; j < size; j++) {
+        travels.add(records.readTravel());
+      }
+      data.addTravels(travels);
+    }
 
-        // if we need any settings, read them here
-        final byte type = ois.readByte();
-        final String user = ois.readUTF();
+    // read the user database
+    count = records.readVarInt();
+    for (int i = 0; i < count; i++) {
+      RegisteredUser ru = records.readUser();
+      data.addUser(ru);
+
+      int size = records.readVarInt();
+      for (int j = 0; j < size; j++) {
+        Itinerary it = records.readItinerary(data);
+        if (it != null) {
+          rebook(ru, it);
+        }
+      }
+    }
+    return restoreSession(data, type, user);
+  }
 
-        // read the travel database
-        int count = ois.readByte();
-        for (int i = 0; i < count; i++) {
-          int size = ois.readInt();
-          for (int j = 0; j < size; j++) {
-            data.addTravel((SingleTravel) ois.readObject());
-          }
+  /**
+   * Deserializes a database written with Java serialization, by the first
+   * release.
+   *
+   * @param data
+   *          the database to input the information into
+   * @param cis
+   *          the decrypted stream to read from
+   * @return the user that was current; null if there was none
+   * @throws IOException
+   *           if there was an error in reading
+   * @throws ClassNotFoundException
+   *           if there was an error in compatibility
+   */
+  public static User deserializeObjects(MainDatabase data, InputStream cis)
+      throws IOException, ClassNotFoundException {
+    try (ObjectInputStream ois = new ObjectInputStream(cis)) {
+
+      // if we need any settings, read them here
+      final byte type = ois.readByte();
+      final String user = ois.readUTF();
+
+      // read the travel database
+      int count = ois.readByte();
+      for (int i = 0; i < count; i++) {
+        int size = ois.readInt();
+        ArrayList<SingleTravel> travels = new ArrayList<>(size);
+        for (int j = 0; j < size; j++) {
+          travels.add((SingleTravel) ois.readObject());
         }
+        data.addTravels(travels);
+      }
 
-        // read the user database
-        count = ois.readInt();
-        for (int i = 0; i < count; i++) {
-          RegisteredUser ru = (RegisteredUser) ois.readObject();
-          data.addUser(ru);
-
-          int size = ois.readInt();
-          for (int j = 0; j < size; j++) {
-            Itinerary it = readItinerary(ois, data);
-            if (it != null) {
-              ru.bookItinerary(it);
-            }
+      // read the user database
+      count = ois.readInt();
+      for (int i = 0; i < count; i++) {
+        RegisteredUser ru = (RegisteredUser) ois.readObject();
+        data.addUser(ru);
+
+        int size = ois.readInt();
+        for (int j = 0; j < size; j++) {
+          Itinerary it = readItinerary(ois, data);
+          if (it != null) {
+            rebook(ru, it);
           }
         }
-        if (type == UserType.Guest.ordinal()) {
-          uc.setUser(new GuestUser());
-        } else if (!user.isEmpty()) {
-          uc.setUser(data.getUser(user));
-        }
       }
+      return restoreSession(data, type, user);
+    }
+  }
+
+  /**
+   * Books a saved itinerary for a user again, and logs the booking if it could
+   * not be, since it is then lost.
+   *
+   * @param ru
+   *          the user that booked the itinerary
+   * @param it
+   *          the itinerary to book
+   */
+  private static void rebook(RegisteredUser ru, Itinerary it) {
+    if (!ru.bookItinerary(it)) {
+      log.log(Level.WARNING, "Dropped a saved booking of " + ru.getIdentifier()
+          + ", which was booked twice or has a full travel: " + it);
+    }
+  }
+
+  /**
+   * Finds the user that was saved as the current user.
+   *
+   * @param data
+   *          the database to find the user in
+   * @param type
+   *          the ordinal of the type of the user; -1 if there was none
+   * @param user
+   *          the id of the user; empty if there was none
+   * @return the user; null if there was none
+   */
+  static User restoreSession(MainDatabase data, byte type, String user) {
+    if (type == UserType.Guest.ordinal()) {
+      return new GuestUser();
+    } else if (!user.isEmpty()) {
+      return data.getUser(user);
+    }
+    return null;
+  }
+
+  /**
+   * Writes the current user of the application.
+   *
+   * @param out
+   *          the writer to write with
+   * @param user
+   *          the current user; null if there is none
+   * @throws IOException
+   *           if an error occurred during writing
+   */
+  static void writeSession(SaveWriter out, User user) throws IOException {
+    if (user != null) {
+      out.writeByte(user.getType().ordinal());
+      out.writeString(user.getIdentifier());
+    } else {
+      out.writeByte(-1);
+      out.writeString("");
     }
   }
 
@@ -340,7 +532,7 @@ public class SaveOperations {
    * @throws IOException
    *           when the encoding is invalid
    */
-  private static Cipher getEncryptionCipher(byte[] salt, byte[] iv)
+  static Cipher getEncryptionCipher(byte[] salt, byte[] iv)
       throws GeneralSecurityException, IOException {
 
     // key is a static password + random salt, iv is random
@@ -352,7 +544,8 @@ public class SaveOperations {
     if (iv == null) {
       cipher.init(Cipher.ENCRYPT_MODE, secretKey);
     } else {
-      cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
+      cipher.init(Cipher.DECRYPT_MODE, secretKey,
+          new GCMParameterSpec(Constants.CIPHER_TAG_LENGTH, iv));
     }
     return cipher;
   }
@@ -0,0 +1,279 @@
+package csc.io;
+
+import csc.database.MainDatabase;
+import csc.travel.Itinerary;
+import csc.travel.SingleTravel;
+import csc.travel.TravelType;
+import csc.users.RegisteredUser;
+import csc.users.UserType;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reads the travels, users and itineraries written by a SaveWriter, in the
+ * same order they were written.
+ */
+public class SaveReader {
+  /**
+   * The stream to read from.
+   */
+  private final DataInputStream in;
+  /**
+   * The shared strings read so far, in order.
+   */
+  private final List<String> strings;
+
+  /**
+   * Creates a reader that has not read any shared strings yet.
+   *
+   * @param in
+   *          the stream to read from
+   */
+  public SaveReader(InputStream in) {
+    this.in = new DataInputStream(in);
+    this.strings = new ArrayList<>();
+  }
+
+  /**
+   * Reads a single byte.
+   *
+   * @return the byte read
+   * @throws IOException
+   *           if an error occurred during reading
+   */
+  public byte readByte() throws IOException {
+    return in.readByte();
+  }
+
+  /**
+   * Reads an int written 7 bits at a time.
+   *
+   * @return the int read
+   * @throws IOException
+   *           if an error occurred during reading, or the int is too long
+   */
+  public int readVarInt() throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed int in the save.");
+  }
+
+  /**
+   * Reads a zigzag encoded long written 7 bits at a time.
+   *
+   * @return the long read
+   * @throws IOException
+   *           if an error occurred during reading, or the long is too long
+   */
+  public long readVarLong() throws IOException {
+    long zigzag = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      zigzag |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+    }
+    throw new IOException("Malformed long in the save.");
+  }
+
+  /**
+   * Reads a string written as its length in bytes followed by its UTF-8
+   * bytes.
+   *
+   * @return the string read
+   * @throws IOException
+   *           if an error occurred during reading
+   */
+  public String readString() throws IOException {
+    int length = readVarInt();
+    if (length < 0) {
+      throw new IOException("Malformed string in the save.");
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, SaveWriter.UTF_8);
+  }
+
+  /**
+   * Reads a string that may have been read before, either as 0 and the string,
+   * or as its index in the table plus 1.
+   *
+   * @return the string read
+   * @throws IOException
+   *           if an error occurred during reading, or the index is unknown
+   */
+  public String readSharedString() throws IOException {
+    int index = readVarInt();
+    if (index == 0) {
+      String value = readString();
+      strings.add(value);
+      return value;
+    }
+    if (index < 0 || index > strings.size()) {
+      throw new IOException("Unknown string " + index + " in the save.");
+    }
+    return strings.get(index - 1);
+  }
+
+  /**
+   * Reads a travel, without any seats booked on it.
+   *
+   * @return the travel read
+   * @throws IOException
+   *           if an error occurred during reading
+   */
+  public SingleTravel readTravel() throws IOException {
+    TravelType type = readTravelType();
+    String id = readString();
+    String provider = readSharedString();
+    String origin = readSharedString();
+    String destination = readSharedString();
+    long start = readVarLong();
+    long end = start + readVarLong();
+    double cost = readCost();
+    int capacity = readVarInt();
+    return type.create(id, new Date(start * SaveWriter.MINUTE),
+        new Date(end * SaveWriter.MINUTE), provider, origin, destination, cost, capacity);
+  }
+
+  /**
+   * Reads a cost, written as the amount of cents doubled, or as 1 followed by
+   * all the bits of the cost.
+   *
+   * @return the cost read
+   * @throws IOException
+   *           if an error occurred during reading
+   */
+  public double readCost() throws IOException {
+    long doubled = readVarLong();
+    if ((doubled & 1) == 0) {
+      return (doubled >> 1) / 100.0;
+    }
+    return Double.longBitsToDouble(in.readLong());
+  }
+
+  /**
+   * Reads a user, without any booked itineraries.
+   *
+   * @return the user read
+   * @throws IOException
+   *           if an error occurred during reading
+   */
+  public RegisteredUser readUser() throws IOException {
+    UserType kind = readUserType();
+    UserType type = readUserType();
+    String email = readString();
+    String password = readString();
+    String firstNames = readString();
+    String lastName = readString();
+    String address = readString();
+    String creditCard = readString();
+    Date expiryDate = new Date(readVarLong());
+    RegisteredUser ru;
+    try {
+      ru = kind.create(email, firstNames, lastName, address, creditCard, expiryDate);
+    } catch (UnsupportedOperationException e) {
+      throw new IOException("Unknown kind of user " + kind + " in the save.", e);
+    }
+    ru.setType(type);
+    ru.setPassword(password);
+    return ru;
+  }
+
+  /**
+   * Reads the travels of an itinerary by type and id, and finds them in a
+   * database.
+   *
+   * @param data
+   *          the database to find the travels in
+   * @return the travels, in order; null where a travel does not exist
+   * @throws IOException
+   *           if an error occurred during reading
+   */
+  public List<SingleTravel> readTravels(MainDatabase data) throws IOException {
+    int size = readVarInt();
+    if (size < 0) {
+      throw new IOException("Malformed itinerary in the save.");
+    }
+    List<SingleTravel> travels = new ArrayList<>(Math.min(size, 16));
+    for (int i = 0; i < size; i++) {
+      TravelType type = readTravelType();
+      travels.add(data.getTravel(type, readString()));
+    }
+    return travels;
+  }
+
+  /**
+   * Reads an itinerary and validates it.
+   *
+   * @param data
+   *          the database to find the travels of the itinerary in
+   * @return the itinerary read; null if it was invalid
+   * @throws IOException
+   *           if an error occurred during reading
+   */
+  public Itinerary readItinerary(MainDatabase data) throws IOException {
+    List<SingleTravel> travels = readTravels(data);
+    // check the itinerary to make sure it is still valid
+    if (travels.isEmpty()) {
+      return null;
+    }
+    Itinerary it = new Itinerary();
+    for (SingleTravel st : travels) {
+      if (st == null) { // doesn't exist; do not add itinerary
+        return null;
+      }
+      try {
+        it.add(st);
+      } catch (IllegalArgumentException ignore) {
+        // we don't need to log this -- probably a travel expired
+        return null;
+      }
+    }
+    return it;
+  }
+
+  /**
+   * Reads the type of a travel.
+   *
+   * @return the type read
+   * @throws IOException
+   *           if an error occurred during reading, or the type is unknown
+   */
+  public TravelType readTravelType() throws IOException {
+    byte index = readByte();
+    TravelType type = TravelType.getByIndex(index);
+    if (type == null) {
+      throw new IOException("Unknown travel type " + index + " in the save.");
+    }
+    return type;
+  }
+
+  /**
+   * Reads the type of a user.
+   *
+   * @return the type read
+   * @throws IOException
+   *           if an error occurred during reading, or the type is unknown
+   */
+  private UserType readUserType() throws IOException {
+    byte index = readByte();
+    UserType type = UserType.getByIndex(index);
+    if (type == null) {
+      throw new IOException("Unknown user type " + index + " in the save.");
+    }
+    return type;
+  }
+}
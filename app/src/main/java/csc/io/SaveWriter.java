@@ -0,0 +1,231 @@
+package csc.io;
+
+import csc.travel.Itinerary;
+import csc.travel.SingleTravel;
+import csc.users.Administrator;
+import csc.users.Moderator;
+import csc.users.RegisteredUser;
+import csc.users.UserType;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes travels, users and itineraries in the binary format of the save file
+ * and the journal, to be read back by a SaveReader in the same order. Numbers
+ * are written as varints, in as few bytes as their value needs, and times as
+ * minutes or milliseconds since the epoch. Locations and providers repeat
+ * across travels, so each is only written once, and is then referred to by
+ * its index in a table of the ones written so far.
+ */
+public class SaveWriter {
+  /**
+   * The amount of milliseconds in a minute, which travels are precise to.
+   */
+  static final long MINUTE = 60L * 1000L;
+  /**
+   * The encoding of strings.
+   */
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * The stream to write to.
+   */
+  private final DataOutputStream out;
+  /**
+   * The index of each shared string written so far, plus 1.
+   */
+  private final Map<String, Integer> strings;
+
+  /**
+   * Creates a writer that has not written any shared strings yet.
+   *
+   * @param out
+   *          the stream to write to
+   */
+  public SaveWriter(OutputStream out) {
+    this.out = new DataOutputStream(out);
+    this.strings = new HashMap<>();
+  }
+
+  /**
+   * Writes a single byte.
+   *
+   * @param value
+   *          the byte to write
+   * @throws IOException
+   *           if an error occurred during writing
+   */
+  public void writeByte(int value) throws IOException {
+    out.writeByte(value);
+  }
+
+  /**
+   * Writes an int that is usually small and not negative, 7 bits at a time.
+   * Negative values take 5 bytes.
+   *
+   * @param value
+   *          the int to write
+   * @throws IOException
+   *           if an error occurred during writing
+   */
+  public void writeVarInt(int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /**
+   * Writes a long that is usually close to 0, 7 bits at a time. It is zigzag
+   * encoded first, so that small negative values are small as well.
+   *
+   * @param value
+   *          the long to write
+   * @throws IOException
+   *           if an error occurred during writing
+   */
+  public void writeVarLong(long value) throws IOException {
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      out.writeByte((int) (zigzag & 0x7F) | 0x80);
+      zigzag >>>= 7;
+    }
+    out.writeByte((int) zigzag);
+  }
+
+  /**
+   * Writes a string as its length in bytes followed by its UTF-8 bytes.
+   *
+   * @param value
+   *          the string to write
+   * @throws IOException
+   *           if an error occurred during writing
+   */
+  public void writeString(String value) throws IOException {
+    byte[] bytes = value.getBytes(UTF_8);
+    writeVarInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Writes a string that is likely to be written again, such as a location.
+   * The first time it is written as 0 and the string; after that, as its
+   * index in the table plus 1.
+   *
+   * @param value
+   *          the string to write
+   * @throws IOException
+   *           if an error occurred during writing
+   */
+  public void writeSharedString(String value) throws IOException {
+    Integer index = strings.get(value);
+    if (index != null) {
+      writeVarInt(index);
+      return;
+    }
+    strings.put(value, strings.size() + 1);
+    writeVarInt(0);
+    writeString(value);
+  }
+
+  /**
+   * Writes a travel, without the seats booked on it.
+   *
+   * @param st
+   *          the travel to write
+   * @throws IOException
+   *           if an error occurred during writing
+   */
+  public void writeTravel(SingleTravel st) throws IOException {
+    writeByte(st.getType().ordinal());
+    writeString(st.getIdentifier());
+    writeSharedString(st.getProvider());
+    writeSharedString(st.getOrigin());
+    writeSharedString(st.getDestination());
+    long start = st.getStartMillis() / MINUTE;
+    writeVarLong(start);
+    writeVarLong(st.getEndMillis() / MINUTE - start); // much shorter than the epoch
+    writeCost(st.getCost());
+    writeVarInt(st.getCapacity());
+  }
+
+  /**
+   * Writes a cost. Costs in whole cents are written as the amount of cents,
+   * doubled; any others as 1 followed by all the bits of the cost.
+   *
+   * @param cost
+   *          the cost to write
+   * @throws IOException
+   *           if an error occurred during writing
+   */
+  public void writeCost(double cost) throws IOException {
+    long cents = Math.round(cost * 100);
+    // compared by bits, so that -0.0 and NaN are written as they are
+    if (Math.abs(cents) < 1L << 52
+        && Double.doubleToLongBits(cents / 100.0) == Double.doubleToLongBits(cost)) {
+      writeVarLong(cents * 2);
+    } else {
+      writeVarLong(1);
+      out.writeLong(Double.doubleToLongBits(cost));
+    }
+  }
+
+  /**
+   * Writes a user, without the itineraries it booked.
+   *
+   * @param ru
+   *          the user to write
+   * @throws IOException
+   *           if an error occurred during writing
+   */
+  public void writeUser(RegisteredUser ru) throws IOException {
+    // the type may have changed since the user was created as another kind
+    writeByte(kindOf(ru).ordinal());
+    writeByte(ru.getType().ordinal());
+    writeString(ru.getIdentifier());
+    writeString(ru.getPassword());
+    writeString(ru.getFirstNames());
+    writeString(ru.getLastName());
+    writeString(ru.getAddress());
+    writeString(ru.getCreditCard());
+    writeVarLong(ru.getExpiryMillis());
+  }
+
+  /**
+   * Gets the type of user that a user was created as.
+   *
+   * @param ru
+   *          the user to check
+   * @return the type whose users are of the same class as ru
+   */
+  private static UserType kindOf(RegisteredUser ru) {
+    if (ru instanceof Administrator) {
+      return UserType.Administrator;
+    } else if (ru instanceof Moderator) {
+      return UserType.Moderator;
+    }
+    return UserType.Client;
+  }
+
+  /**
+   * Writes the travels of an itinerary, by type and id.
+   *
+   * @param it
+   *          the itinerary to write
+   * @throws IOException
+   *           if an error occurred during writing
+   */
+  public void writeItinerary(Itinerary it) throws IOException {
+    writeVarInt(it.size());
+    for (SingleTravel st : it.getTravels()) {
+      writeByte(st.getType().ordinal());
+      writeString(st.getIdentifier());
+    }
+  }
+}
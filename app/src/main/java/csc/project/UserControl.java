@@ -86,17 +86,18 @@ public class UserControl extends Application {
   /**
    * Parses data from a given file, parsing objects line by line. The data
    * returned is of class T, and type is of class E, where E can parse lines to
-   * create T.
+   * create T. Large files are parsed on the threads of the database.
    *
    * @param path
    *          the path to the file
    * @param type
    *          the type of the objects
-   * @return a set containing all users parsed from the file
+   * @return a list of all objects parsed from the file, in order
    */
   public <T, E extends LineParse<T>> Collection<T> parseData(String path, E type) {
     return InputOperations.parseData(
-        new File(getDir(Constants.SAVE_DIR, Context.MODE_PRIVATE), path).getPath(), type);
+        new File(getDir(Constants.SAVE_DIR, Context.MODE_PRIVATE), path).getPath(), type,
+        getDatabase().getExecutor());
   }
 
   /**
@@ -173,6 +174,7 @@ public class UserControl extends Application {
     if (ru != null) {
       if (ru.getPassword().isEmpty()) {
         ru.setPassword(password);
+        database.addUser(ru); // record the new password
       }
       if (password.equals(ru.getPassword())) {
         return ru;
@@ -4,7 +4,10 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
+import android.widget.Toast;
 
+import csc.database.MainDatabase;
+import csc.database.SeatHold;
 import csc.project.BaseActivity;
 import csc.project.R;
 import csc.project.UserControl;
@@ -34,6 +37,10 @@ public class ViewItineraryActivity extends BaseActivity
    * The user associated with this activity.
    */
   private RegisteredUser user = null;
+  /**
+   * The seats held for the user while viewing the itinerary; null if none are.
+   */
+  private SeatHold hold = null;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -54,6 +61,9 @@ public class ViewItineraryActivity extends BaseActivity
       user = uc.getDatabase().getUser(intent.getStringExtra(Constants.USER_KEY));
       if (user.hasBooked(itin)) {
         button.setText(getString(R.string.it_unbook));
+      } else {
+        // keep the seats from being taken while deciding whether to book
+        hold = uc.getDatabase().holdItinerary(itin);
       }
     }
     ItineraryViewHolder viewHolder = new ItineraryViewHolder(
@@ -78,7 +88,14 @@ public class ViewItineraryActivity extends BaseActivity
     if (user.hasBooked(itin)) {
       user.removeItinerary(itin);
     } else {
-      user.bookItinerary(itin);
+      MainDatabase database = ((UserControl) getApplicationContext()).getDatabase();
+      // without a hold, or once it expired, the seats must still be free
+      boolean booked = hold != null && database.bookHold(user, hold);
+      if (!booked && !user.bookItinerary(itin)) {
+        // another booking took the last seat of a travel since it was shown
+        Toast.makeText(this, getString(R.string.it_full), Toast.LENGTH_SHORT).show();
+        return;
+      }
     }
     // commit changes
     ((UserControl) getApplicationContext()).save();
@@ -86,6 +103,14 @@ public class ViewItineraryActivity extends BaseActivity
     finish();
   }
 
+  @Override
+  protected void onDestroy() {
+    if (hold != null) {
+      ((UserControl) getApplicationContext()).getDatabase().releaseHold(hold);
+    }
+    super.onDestroy();
+  }
+
   @Override
   public void onInteraction(SingleTravel travel) {
     UserControl uc = (UserControl) getApplicationContext();
@@ -56,6 +56,8 @@ public class ForgotActivity extends BaseActivity {
       // non-hashed
       String newPassword = InputOperations.generatePassword(Constants.MAX_PASSWORD);
       user.setPassword(InputOperations.hashPassword(newPassword));
+      uc.getDatabase().addUser(user); // refresh serialized
+      uc.save();
       idPasswordMessage.setText(getString(string.password_send_success, newPassword));
       idPasswordMessage.setVisibility(View.VISIBLE);
     } else {
@@ -17,7 +17,10 @@ import csc.travel.TravelType;
 import csc.users.RegisteredUser;
 import csc.users.UserType;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Fragment to upload user or travel info.
@@ -162,20 +165,25 @@ public class UploadFragment extends Fragment {
     }
     // make a string based on each result
     StringBuilder sb = new StringBuilder();
+    ArrayList<SingleTravel> valid = new ArrayList<>(parsedData.size());
+    Set<String> seen = new HashSet<>();
     for (SingleTravel st : parsedData) {
       sb.append(st.getIdentifier());
       if (st.isInvalid()) {
         sb.append(getString(R.string.invalid_skip));
       } else {
-        if (uc.getDatabase().getTravel(tt, st.getIdentifier()) != null) {
+        // an earlier row of the file may have added it already
+        if (!seen.add(st.getIdentifier())
+            || uc.getDatabase().getTravel(tt, st.getIdentifier()) != null) {
           sb.append(getString(R.string.updated));
         } else {
           sb.append(getString(R.string.added));
         }
-        uc.getDatabase().addTravel(st);
+        valid.add(st);
       }
       sb.append('\n');
     }
+    uc.getDatabase().addTravels(valid);
 
     travelOutput.setText(sb.toString());
 
@@ -1,12 +1,17 @@
 package csc.travel;
 
 import csc.database.MainDatabase;
+import csc.util.Locations;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -19,13 +24,14 @@ public class Itinerary extends Travel implements Iterable<SingleTravel> {
    */
   private static final long serialVersionUID = -1524101019614716587L;
   /**
-   * The ordered map to store each travel by their origin location.
+   * The ordered map to store each travel by the id of their origin location.
+   * Ids are not saved, so the travels are saved as a list instead.
    */
-  private final LinkedHashMap<String, SingleTravel> travel;
+  private transient LinkedHashMap<Integer, SingleTravel> travel;
   /**
-   * The last travel origin in this itinerary, used for optimization.
+   * The last travel origin id in this itinerary, used for optimization.
    */
-  private String last = null;
+  private transient Integer last = null;
 
   /**
    * Creates a multiple-element Itinerary
@@ -33,7 +39,7 @@ public class Itinerary extends Travel implements Iterable<SingleTravel> {
    * @param travel
    *          The travels to be represented by this itinerary.
    */
-  private Itinerary(LinkedHashMap<String, SingleTravel> travel) {
+  Itinerary(LinkedHashMap<Integer, SingleTravel> travel) {
     super(0.0);
     this.travel = travel;
     calculateCost();
@@ -43,7 +49,7 @@ public class Itinerary extends Travel implements Iterable<SingleTravel> {
    * Creates an empty Itinerary.
    */
   public Itinerary() {
-    this(new LinkedHashMap<String, SingleTravel>());
+    this(new LinkedHashMap<Integer, SingleTravel>());
   }
 
   /**
@@ -67,10 +73,13 @@ public class Itinerary extends Travel implements Iterable<SingleTravel> {
     // it's invalid if the time and location aren't after the end of this path
     if (toAdd == null || toAdd.isFull()
         || (!travel.isEmpty()
-            && (toAdd.getStartTime().before(getEndTime()) || containsOrigin(toAdd.getOrigin())
-                || !toAdd.getOrigin().equalsIgnoreCase(getDestination())))) {
-      throw new IllegalArgumentException("Travels should start after " + getEndTime()
-          + " and should originate at " + getDestination());
+            && (toAdd.getStartMillis() < getEndMillis()
+                || travel.containsKey(toAdd.getOriginId())
+                || toAdd.getOriginId() != getLast().getDestinationId()))) {
+      // an empty itinerary has no end to describe
+      throw new IllegalArgumentException(travel.isEmpty() ? "Travels should not be missing or full."
+          : "Travels should start after " + getEndTime() + " and should originate at "
+              + getDestination());
     }
     addTravel(toAdd);
   }
@@ -83,8 +92,8 @@ public class Itinerary extends Travel implements Iterable<SingleTravel> {
    * @return True if this itinerary contains the ID of check
    */
   public boolean containsTravel(SingleTravel check) {
-    return travel.containsKey(check.getOrigin().toLowerCase()) && travel
-        .get(check.getOrigin().toLowerCase()).getIdentifier().equals(check.getIdentifier());
+    SingleTravel same = travel.get(check.getOriginId());
+    return same != null && same.getIdentifier().equals(check.getIdentifier());
   }
 
   /**
@@ -95,7 +104,8 @@ public class Itinerary extends Travel implements Iterable<SingleTravel> {
    * @return True if this itinerary contains a travel originating from origin
    */
   public boolean containsOrigin(String check) {
-    return travel.containsKey(check.toLowerCase());
+    int id = Locations.findId(check);
+    return id >= 0 && travel.containsKey(id);
   }
 
   /**
@@ -141,8 +151,8 @@ public class Itinerary extends Travel implements Iterable<SingleTravel> {
    *          the travel to add to this itinerary
    */
   private void addTravel(SingleTravel toAdd) {
-    travel.put(toAdd.getOrigin().toLowerCase(), toAdd);
-    this.last = toAdd.getOrigin().toLowerCase();
+    travel.put(toAdd.getOriginId(), toAdd);
+    this.last = toAdd.getOriginId();
     cost += toAdd.getCost();
   }
 
@@ -153,7 +163,7 @@ public class Itinerary extends Travel implements Iterable<SingleTravel> {
     cost = 0.0;
     for (SingleTravel travels : getTravels()) {
       cost += travels.getCost();
-      this.last = travels.getOrigin().toLowerCase(); // update
+      this.last = travels.getOriginId(); // update
     }
   }
 
@@ -166,18 +176,28 @@ public class Itinerary extends Travel implements Iterable<SingleTravel> {
   public void refresh(MainDatabase md) {
     Set<SingleTravel> travels = new LinkedHashSet<>(travel.values());
     for (SingleTravel st : travels) {
-      travel.put(st.getOrigin().toLowerCase(), md.getTravel(st.getType(), st.getIdentifier()));
+      travel.put(st.getOriginId(), md.getTravel(st.getType(), st.getIdentifier()));
     }
   }
 
   /**
-   * Adds users to each travel in this itinerary. Does nothing if already
-   * booked.
+   * Books a seat on every travel in this itinerary, or on none of them if one
+   * is full. Seats booked before reaching a full travel are released again.
+   *
+   * @return True if every travel was booked; false if none were
    */
-  public void book() {
+  public boolean book() {
+    List<SingleTravel> reserved = new ArrayList<>(travel.size());
     for (SingleTravel travels : getTravels()) {
-      travels.addUser();
+      if (!travels.reserveSeat()) {
+        for (SingleTravel st : reserved) {
+          st.removeUser();
+        }
+        return false;
+      }
+      reserved.add(travels);
     }
+    return true;
   }
 
   /**
@@ -215,13 +235,13 @@ public class Itinerary extends Travel implements Iterable<SingleTravel> {
   }
 
   @Override
-  public Date getStartTime() {
-    return getFirst().getStartTime();
+  public long getStartMillis() {
+    return getFirst().getStartMillis();
   }
 
   @Override
-  public Date getEndTime() {
-    return getLast().getEndTime();
+  public long getEndMillis() {
+    return getLast().getEndMillis();
   }
 
   @Override
@@ -272,4 +292,37 @@ public class Itinerary extends Travel implements Iterable<SingleTravel> {
     Itinerary other = (Itinerary) obj;
     return travel.equals(other.travel);
   }
+
+  /**
+   * Writes this itinerary, with its travels as a list.
+   *
+   * @param out
+   *          the stream to write to
+   * @throws IOException
+   *           if the stream could not be written
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeObject(new ArrayList<>(travel.values()));
+  }
+
+  /**
+   * Reads this itinerary, and maps its travels by their origin ids again.
+   *
+   * @param in
+   *          the stream to read from
+   * @throws IOException
+   *           if the stream could not be read
+   * @throws ClassNotFoundException
+   *           if a class of this itinerary could not be found
+   */
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    travel = new LinkedHashMap<>();
+    for (SingleTravel st : (ArrayList<SingleTravel>) in.readObject()) {
+      travel.put(st.getOriginId(), st);
+    }
+    calculateCost();
+  }
 }
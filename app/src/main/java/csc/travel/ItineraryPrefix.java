@@ -0,0 +1,243 @@
+package csc.travel;
+
+import csc.util.Locations;
+
+import java.util.LinkedHashMap;
+
+/**
+ * An immutable sequence of SingleTravel, linked from the last travel to the
+ * first. Sequences continuing the same prefix share it instead of copying it,
+ * so searches can extend a sequence in constant time and only convert it to an
+ * Itinerary once it is complete.
+ */
+public class ItineraryPrefix extends Travel {
+  /**
+   * Serializable implementation.
+   */
+  private static final long serialVersionUID = 2067407131716424523L;
+  /**
+   * The last travel of this sequence.
+   */
+  private final SingleTravel travel;
+  /**
+   * The sequence before the last travel; null if this is the first travel.
+   */
+  private final ItineraryPrefix previous;
+  /**
+   * The first travel of this sequence.
+   */
+  private final SingleTravel first;
+  /**
+   * The amount of travels in this sequence.
+   */
+  private final int size;
+  /**
+   * A bit for each origin of this sequence, for quickly checking that a
+   * location was not visited.
+   */
+  private final long visited;
+
+  /**
+   * Creates a sequence continuing a prefix with a travel. The travel must
+   * depart from the destination of previous after it arrives, and must not
+   * arrive at any origin of previous.
+   *
+   * @param travel
+   *          the travel to continue with
+   * @param previous
+   *          the sequence to continue; null starts a new sequence
+   */
+  public ItineraryPrefix(SingleTravel travel, ItineraryPrefix previous) {
+    super(travel.getCost() + (previous == null ? 0.0 : previous.cost));
+    this.travel = travel;
+    this.previous = previous;
+    if (previous == null) {
+      this.first = travel;
+      this.size = 1;
+      this.visited = bit(travel.getOriginId());
+    } else {
+      this.first = previous.first;
+      this.size = previous.size + 1;
+      this.visited = previous.visited | bit(travel.getOriginId());
+    }
+  }
+
+  /**
+   * Gets the last travel of this sequence.
+   *
+   * @return the last travel
+   */
+  public SingleTravel getTravel() {
+    return travel;
+  }
+
+  /**
+   * Gets the sequence before the last travel.
+   *
+   * @return the prefix of this sequence; null if this has a single travel
+   */
+  public ItineraryPrefix getPrevious() {
+    return previous;
+  }
+
+  /**
+   * Gets how many travels are in this sequence.
+   *
+   * @return the amount of travels
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the id of the destination of this sequence in the location
+   * dictionary.
+   *
+   * @return the id of the destination
+   */
+  public int getDestinationId() {
+    return travel.getDestinationId();
+  }
+
+  /**
+   * Gets whether a travel of this sequence originates from a location.
+   *
+   * @param location
+   *          the location to check
+   * @return True if this sequence contains a travel originating from location
+   */
+  public boolean containsOrigin(String location) {
+    int id = Locations.findId(location);
+    return id >= 0 && containsOrigin(id);
+  }
+
+  /**
+   * Gets whether a travel of this sequence originates from a location.
+   *
+   * @param location
+   *          the id of the location to check
+   * @return True if this sequence contains a travel originating from location
+   */
+  public boolean containsOrigin(int location) {
+    if ((visited & bit(location)) == 0) {
+      return false;
+    }
+    for (ItineraryPrefix at = this; at != null; at = at.previous) {
+      if (at.travel.getOriginId() == location) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets whether every origin of this sequence is also an origin of another,
+   * so that any travel continuing the other sequence can continue this one.
+   *
+   * @param other
+   *          the sequence to check against
+   * @return True if this sequence visits no location that other does not
+   */
+  public boolean visitsWithin(ItineraryPrefix other) {
+    if ((visited & ~other.visited) != 0) {
+      return false;
+    }
+    for (ItineraryPrefix at = this; at != null; at = at.previous) {
+      if (!other.containsOrigin(at.travel.getOriginId())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Converts this sequence to an itinerary.
+   *
+   * @return a new itinerary of the travels in this sequence
+   */
+  public Itinerary toItinerary() {
+    SingleTravel[] travels = new SingleTravel[size];
+    int i = size;
+    for (ItineraryPrefix at = this; at != null; at = at.previous) {
+      travels[--i] = at.travel;
+    }
+    LinkedHashMap<Integer, SingleTravel> map = new LinkedHashMap<>(size * 2);
+    for (SingleTravel st : travels) {
+      map.put(st.getOriginId(), st);
+    }
+    return new Itinerary(map);
+  }
+
+  /**
+   * Gets the bit of a location in the visited mask.
+   *
+   * @param location
+   *          the id of the location to get the bit of
+   * @return a mask with a single bit set
+   */
+  private static long bit(int location) {
+    return 1L << (location & 63);
+  }
+
+  @Override
+  public long getStartMillis() {
+    return first.getStartMillis();
+  }
+
+  @Override
+  public long getEndMillis() {
+    return travel.getEndMillis();
+  }
+
+  @Override
+  public String getOrigin() {
+    return first.getOrigin();
+  }
+
+  @Override
+  public String getDestination() {
+    return travel.getDestination();
+  }
+
+  @Override
+  public String toString() {
+    return toItinerary().toString();
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    for (ItineraryPrefix at = this; at != null; at = at.previous) {
+      result = prime * result + at.travel.hashCode();
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object oth) {
+    if (this == oth) {
+      return true;
+    }
+    if (oth == null || getClass() != oth.getClass()) {
+      return false;
+    }
+    ItineraryPrefix other = (ItineraryPrefix) oth;
+    if (size != other.size) {
+      return false;
+    }
+    ItineraryPrefix at = this;
+    ItineraryPrefix oat = other;
+    while (at != null) {
+      if (at == oat) { // shared prefix
+        return true;
+      }
+      if (!at.travel.equals(oat.travel)) {
+        return false;
+      }
+      at = at.previous;
+      oat = oat.previous;
+    }
+    return true;
+  }
+}
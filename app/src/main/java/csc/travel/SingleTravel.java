@@ -1,12 +1,22 @@
 package csc.travel;
 
+import csc.interfaces.CapacityListener;
 import csc.interfaces.Identifiable;
 import csc.interfaces.Updatable;
+import csc.util.Locations;
+import csc.util.TimeFormat;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
- * A class that represents a single travel.
+ * A class that represents a single travel. Times are kept to the minute, as
+ * UNIX timestamps in minutes. Seats can be booked and released from multiple
+ * threads at once, without ever booking more seats than the capacity.
  */
 public abstract class SingleTravel extends Travel
     implements Identifiable<String, TravelType>, Updatable<SingleTravel> {
@@ -14,6 +24,29 @@ public abstract class SingleTravel extends Travel
    * Serializable implementation.
    */
   private static final long serialVersionUID = 4953963860520338679L;
+  /**
+   * The fields that are saved, as they were when times were kept as dates, so
+   * that travels saved back then can still be read.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {
+      new ObjectStreamField("id", String.class),
+      new ObjectStreamField("type", TravelType.class),
+      new ObjectStreamField("start", Date.class),
+      new ObjectStreamField("end", Date.class),
+      new ObjectStreamField("origin", String.class),
+      new ObjectStreamField("destination", String.class),
+      new ObjectStreamField("capacity", int.class),
+      new ObjectStreamField("numUsers", int.class),
+      new ObjectStreamField("provider", String.class) };
+  /**
+   * The amount of milliseconds in a minute.
+   */
+  private static final long MINUTE = 60L * 1000L;
+  /**
+   * Changes the number of users atomically, so seats are never oversold.
+   */
+  private static final AtomicIntegerFieldUpdater<SingleTravel> USERS =
+      AtomicIntegerFieldUpdater.newUpdater(SingleTravel.class, "numUsers");
   /**
    * The id (unique number) of this travel.
    */
@@ -23,13 +56,18 @@ public abstract class SingleTravel extends Travel
    */
   private TravelType type; // Enums are Serializable by default
   /**
-   * The start time of this travel.
+   * The start time of this travel, in minutes.
+   */
+  private long start;
+  /**
+   * The end time of this travel, in minutes.
    */
-  private Date start;
+  private long end;
   /**
-   * The end time of this travel.
+   * The day of departure of this travel, which depends on the time zone, so it
+   * is not saved.
    */
-  private Date end;
+  private transient int startDay;
   /**
    * The origin location of this travel.
    */
@@ -38,6 +76,14 @@ public abstract class SingleTravel extends Travel
    * The destination location of this travel.
    */
   private String destination;
+  /**
+   * The id of the origin in the location dictionary.
+   */
+  private transient int originId;
+  /**
+   * The id of the destination in the location dictionary.
+   */
+  private transient int destinationId;
   /**
    * The capacity for this travel.
    */
@@ -45,11 +91,16 @@ public abstract class SingleTravel extends Travel
   /**
    * The number of users who have booked this travel.
    */
-  private int numUsers;
+  private volatile int numUsers;
   /**
    * The provider for this travel.
    */
   private String provider;
+  /**
+   * The object to tell when this travel becomes full or stops being full; null
+   * if there is none.
+   */
+  private transient CapacityListener<SingleTravel> listener;
 
   /**
    * Create a SingleTravel instance with given parameters.
@@ -59,9 +110,9 @@ public abstract class SingleTravel extends Travel
    * @param id
    *          the given travel id
    * @param start
-   *          the departure date and time
+   *          the departure date and time, to the minute
    * @param end
-   *          the arrival date and time
+   *          the arrival date and time, to the minute
    * @param origin
    *          the given origin
    * @param destination
@@ -78,13 +129,16 @@ public abstract class SingleTravel extends Travel
     super(cost);
     this.id = id;
     this.type = type;
-    this.start = start;
-    this.end = end;
-    this.origin = origin;
-    this.destination = destination;
+    this.start = toMinutes(start);
+    this.startDay = TimeFormat.epochDay(getStartMillis());
+    this.end = toMinutes(end);
     this.capacity = capacity;
     this.provider = provider;
     this.numUsers = 0;
+    this.origin = Locations.intern(origin);
+    this.destination = Locations.intern(destination);
+    this.originId = Locations.getId(origin);
+    this.destinationId = Locations.getId(destination);
   }
 
   @Override
@@ -108,13 +162,18 @@ public abstract class SingleTravel extends Travel
   }
 
   @Override
-  public Date getStartTime() {
-    return start;
+  public long getStartMillis() {
+    return start * MINUTE;
   }
 
   @Override
-  public Date getEndTime() {
-    return end;
+  public long getEndMillis() {
+    return end * MINUTE;
+  }
+
+  @Override
+  public int getStartDay() {
+    return startDay;
   }
 
   @Override
@@ -141,20 +200,35 @@ public abstract class SingleTravel extends Travel
    * Sets the end date.
    * 
    * @param end
-   *          the date to set
+   *          the date to set, to the minute
    */
   public void setEndTime(Date end) {
-    this.end = end;
+    this.end = toMinutes(end);
   }
 
   /**
    * Sets the start date.
    * 
    * @param start
-   *          the date to set
+   *          the date to set, to the minute
    */
   public void setStartTime(Date start) {
-    this.start = start;
+    this.start = toMinutes(start);
+    this.startDay = TimeFormat.epochDay(getStartMillis());
+  }
+
+  /**
+   * Converts a date to a UNIX timestamp in minutes, rounding down.
+   *
+   * @param date
+   *          the date to convert
+   * @return the minute of date
+   */
+  private static long toMinutes(Date date) {
+    long millis = date.getTime();
+    long ret = millis / MINUTE;
+    // division rounds towards zero, so dates before 1970 need one less
+    return millis < 0 && ret * MINUTE != millis ? ret - 1 : ret;
   }
 
   /**
@@ -164,7 +238,9 @@ public abstract class SingleTravel extends Travel
    *          the capacity to set
    */
   public void setCapacity(int capacity) {
+    boolean full = isFull();
     this.capacity = capacity;
+    fullnessChanged(full, isFull());
   }
 
   /**
@@ -184,7 +260,17 @@ public abstract class SingleTravel extends Travel
    *          the origin to set
    */
   public void setOrigin(String origin) {
-    this.origin = origin;
+    this.origin = Locations.intern(origin);
+    this.originId = Locations.getId(origin);
+  }
+
+  /**
+   * Gets the id of the origin in the location dictionary.
+   *
+   * @return the id of the origin
+   */
+  public int getOriginId() {
+    return originId;
   }
 
   /**
@@ -194,7 +280,17 @@ public abstract class SingleTravel extends Travel
    *          the destination to set
    */
   public void setDestination(String destination) {
-    this.destination = destination;
+    this.destination = Locations.intern(destination);
+    this.destinationId = Locations.getId(destination);
+  }
+
+  /**
+   * Gets the id of the destination in the location dictionary.
+   *
+   * @return the id of the destination
+   */
+  public int getDestinationId() {
+    return destinationId;
   }
 
   /**
@@ -220,8 +316,26 @@ public abstract class SingleTravel extends Travel
    * if this travel is full.
    */
   public void addUser() {
-    if (!isFull()) {
-      numUsers++;
+    reserveSeat();
+  }
+
+  /**
+   * Books a seat for a user, unless this travel is full. Other threads may book
+   * seats at the same time, but no more seats than the capacity are booked.
+   *
+   * @return True if a seat was booked; false if this travel is full
+   */
+  public boolean reserveSeat() {
+    while (true) {
+      int users = numUsers;
+      int limit = capacity;
+      if (users >= limit) {
+        return false;
+      }
+      if (USERS.compareAndSet(this, users, users + 1)) {
+        fullnessChanged(false, users + 1 >= limit);
+        return true;
+      }
     }
   }
 
@@ -230,8 +344,16 @@ public abstract class SingleTravel extends Travel
    * nothing if this travel is empty.
    */
   public void removeUser() {
-    if (numUsers >= 0) {
-      numUsers--;
+    while (true) {
+      int users = numUsers;
+      if (users <= 0) {
+        return;
+      }
+      if (USERS.compareAndSet(this, users, users - 1)) {
+        int limit = capacity;
+        fullnessChanged(users >= limit, users - 1 >= limit);
+        return;
+      }
     }
   }
 
@@ -239,7 +361,33 @@ public abstract class SingleTravel extends Travel
    * Resets the user count of this travel.
    */
   public void resetUsers() {
-    numUsers = 0;
+    int limit = capacity;
+    fullnessChanged(USERS.getAndSet(this, 0) >= limit, 0 >= limit);
+  }
+
+  /**
+   * Sets the object to tell when this travel becomes full or stops being full.
+   *
+   * @param listener
+   *          the listener to set; null removes it
+   */
+  public void setCapacityListener(CapacityListener<SingleTravel> listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Tells the listener if whether this travel is full has changed.
+   *
+   * @param wasFull
+   *          whether this travel was full before the change
+   * @param full
+   *          whether this travel is full after the change
+   */
+  private void fullnessChanged(boolean wasFull, boolean full) {
+    CapacityListener<SingleTravel> current = listener;
+    if (current != null && wasFull != full) {
+      current.capacityChanged(this);
+    }
   }
 
   /**
@@ -266,16 +414,19 @@ public abstract class SingleTravel extends Travel
    * @return a boolean representing if this travel is invalid
    */
   public boolean isInvalid() {
-    return getEndTime().before(getStartTime()) || getCapacity() < 0
-        || getOrigin().equalsIgnoreCase(getDestination());
+    return end < start || getCapacity() < 0
+        || originId == destinationId;
   }
 
   @Override
   public void update(SingleTravel other) {
     this.start = other.start;
+    this.startDay = other.startDay;
     this.end = other.end;
     this.origin = other.origin;
     this.destination = other.destination;
+    this.originId = other.originId;
+    this.destinationId = other.destinationId;
     this.cost = other.cost;
     this.capacity = other.capacity;
     this.provider = other.provider;
@@ -286,6 +437,55 @@ public abstract class SingleTravel extends Travel
     return toString(true);
   }
 
+  /**
+   * Writes this travel, with its times as dates.
+   *
+   * @param out
+   *          the stream to write to
+   * @throws IOException
+   *           if the stream could not be written
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("id", id);
+    fields.put("type", type);
+    fields.put("start", new Date(getStartMillis()));
+    fields.put("end", new Date(getEndMillis()));
+    fields.put("origin", origin);
+    fields.put("destination", destination);
+    fields.put("capacity", capacity);
+    fields.put("numUsers", numUsers);
+    fields.put("provider", provider);
+    out.writeFields();
+  }
+
+  /**
+   * Reads this travel, converts its times to minutes, looks up its locations
+   * in the dictionary, and finds its day of departure.
+   *
+   * @param in
+   *          the stream to read from
+   * @throws IOException
+   *           if the stream could not be read
+   * @throws ClassNotFoundException
+   *           if a class of this travel could not be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField fields = in.readFields();
+    id = (String) fields.get("id", null);
+    type = (TravelType) fields.get("type", null);
+    start = toMinutes((Date) fields.get("start", null));
+    end = toMinutes((Date) fields.get("end", null));
+    capacity = fields.get("capacity", 0);
+    numUsers = fields.get("numUsers", 0);
+    provider = (String) fields.get("provider", null);
+    startDay = TimeFormat.epochDay(getStartMillis());
+    origin = Locations.intern((String) fields.get("origin", null));
+    destination = Locations.intern((String) fields.get("destination", null));
+    originId = Locations.getId(origin);
+    destinationId = Locations.getId(destination);
+  }
+
   /**
    * Formats this travel into a string representation.
    *
@@ -302,10 +502,10 @@ public abstract class SingleTravel extends Travel
     long temp = Double.doubleToLongBits(cost);
     result = prime * result + (int) (temp ^ (temp >>> 32));
     result = prime * result + destination.hashCode();
-    result = prime * result + end.hashCode();
+    result = prime * result + (int) (end ^ (end >>> 32));
     result = prime * result + id.hashCode();
     result = prime * result + origin.hashCode();
-    result = prime * result + start.hashCode();
+    result = prime * result + (int) (start ^ (start >>> 32));
     result = prime * result + type.hashCode();
     result = prime * result + capacity;
     result = prime * result + provider.hashCode();
@@ -323,8 +523,8 @@ public abstract class SingleTravel extends Travel
     SingleTravel other = (SingleTravel) oth;
     return Double.doubleToLongBits(cost) == Double.doubleToLongBits(other.cost)
         && type == other.type && provider.equals(other.provider) && origin.equals(other.origin)
-        && start.equals(other.start) && destination.equals(other.destination)
-        && end.equals(other.end) && id.equals(other.id) && capacity == other.capacity;
+        && start == other.start && destination.equals(other.destination)
+        && end == other.end && id.equals(other.id) && capacity == other.capacity;
   }
 
 }
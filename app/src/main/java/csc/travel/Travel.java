@@ -31,19 +31,49 @@ public abstract class Travel implements Serializable {
   }
 
   /**
-   * Get the arrival date and time of the travel.
+   * Get the departure time of the travel, as a UNIX timestamp. Searches and
+   * comparisons should use this instead of getStartTime, which creates a Date.
+   *
+   * @return the departure time of the travel, in milliseconds
+   */
+  public abstract long getStartMillis();
+
+  /**
+   * Get the arrival time of the travel, as a UNIX timestamp. Searches and
+   * comparisons should use this instead of getEndTime, which creates a Date.
+   *
+   * @return the arrival time of the travel, in milliseconds
+   */
+  public abstract long getEndMillis();
+
+  /**
+   * Get the day of departure of the travel.
    *
-   * @return a Date representative of the arrival date and time of the travel
+   * @return the day the travel departs on, as given by TimeFormat.epochDay
    */
-  public abstract Date getStartTime();
+  public int getStartDay() {
+    return TimeFormat.epochDay(getStartMillis());
+  }
 
   /**
    * Get the departure date and time of the travel.
    *
-   * @return a string representative of the departure date and time of the
+   * @return a new Date representative of the departure date and time of the
    *         travel
    */
-  public abstract Date getEndTime();
+  public Date getStartTime() {
+    return new Date(getStartMillis());
+  }
+
+  /**
+   * Get the arrival date and time of the travel.
+   *
+   * @return a new Date representative of the arrival date and time of the
+   *         travel
+   */
+  public Date getEndTime() {
+    return new Date(getEndMillis());
+  }
 
   /**
    * Get the origin of the travel.
@@ -75,7 +105,7 @@ public abstract class Travel implements Serializable {
    */
   public long getTravelTime() {
 
-    return getEndTime().getTime() - getStartTime().getTime();
+    return getEndMillis() - getStartMillis();
   }
 
   /**
@@ -95,7 +125,7 @@ public abstract class Travel implements Serializable {
    */
   public String formatStartTime() {
 
-    return TimeFormat.DATE_TIME.formatDate(getStartTime());
+    return TimeFormat.DATE_TIME.formatDate(getStartMillis());
   }
 
   /**
@@ -105,7 +135,7 @@ public abstract class Travel implements Serializable {
    */
   public String formatEndTime() {
 
-    return TimeFormat.DATE_TIME.formatDate(getEndTime());
+    return TimeFormat.DATE_TIME.formatDate(getEndMillis());
   }
 
   /**
@@ -131,12 +161,12 @@ public abstract class Travel implements Serializable {
    * @return True if this travel starts in between dateLower and dateUpper
    */
   public boolean startsWithin(Date dateLower, Date dateUpper) {
-    if (getStartTime().after(dateLower) || getStartTime().equals(dateLower)) {
+    long start = getStartMillis();
+    if (start >= dateLower.getTime()) {
       if (dateUpper != null) {
-        return getStartTime().before(dateUpper) || getStartTime().equals(dateUpper);
+        return start <= dateUpper.getTime();
       } else {
-        return TimeFormat.DATE.formatDate(getStartTime())
-            .equals(TimeFormat.DATE.formatDate(dateLower));
+        return getStartDay() == TimeFormat.epochDay(dateLower.getTime());
       }
     }
     return false;
@@ -14,23 +14,43 @@ public enum TravelComparator implements Comparator<Travel> {
     public int compare(Travel lhs, Travel rhs) {
       return Double.compare(lhs.getCost(), rhs.getCost());
     }
+
+    @Override
+    public double getKey(Travel travel) {
+      return travel.getCost();
+    }
   },
   Total_Travel_Time {
     @Override
     public int compare(Travel lhs, Travel rhs) {
       return Long.compare(lhs.getTravelTime(), rhs.getTravelTime());
     }
+
+    @Override
+    public double getKey(Travel travel) {
+      return travel.getTravelTime();
+    }
   },
   Start_Time {
     @Override
     public int compare(Travel lhs, Travel rhs) {
-      return lhs.getStartTime().compareTo(rhs.getStartTime());
+      return Long.compare(lhs.getStartMillis(), rhs.getStartMillis());
+    }
+
+    @Override
+    public double getKey(Travel travel) {
+      return travel.getStartMillis();
     }
   },
   End_Time {
     @Override
     public int compare(Travel lhs, Travel rhs) {
-      return lhs.getEndTime().compareTo(rhs.getEndTime());
+      return Long.compare(lhs.getEndMillis(), rhs.getEndMillis());
+    }
+
+    @Override
+    public double getKey(Travel travel) {
+      return travel.getEndMillis();
     }
   };
 
@@ -40,6 +60,17 @@ public enum TravelComparator implements Comparator<Travel> {
     this.name = name().replace("_", " ");
   }
 
+  /**
+   * Gets the value that this Comparator orders by. Adding travels to the end of
+   * an itinerary never decreases this value, so the value of an itinerary is a
+   * lower bound for every itinerary starting with it.
+   *
+   * @param travel
+   *          the travel to get the value of
+   * @return the value of travel, in ascending order
+   */
+  public abstract double getKey(Travel travel);
+
   /**
    * Returns a Comparator of this type but in descending order.
    *
@@ -5,6 +5,7 @@ import csc.util.TimeFormat;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -13,38 +14,30 @@ import java.util.List;
 public enum TravelType implements LineParse<SingleTravel> {
   Flight(8) {
     @Override
-    public SingleTravel create(String... args) throws ParseException {
-      // Number,DepartureDateTime,ArrivalDateTime,Airline,Origin,Destination,Price,NumSeats
-      return new Flight(this, args[0], TimeFormat.DATE_TIME.parseString(args[1]),
-          TimeFormat.DATE_TIME.parseString(args[2]), args[4], args[5],
-          Double.parseDouble(args[6]), args[3], Integer.parseInt(args[7]));
+    public SingleTravel create(String id, Date start, Date end, String provider, String origin,
+        String destination, double cost, int capacity) {
+      return new Flight(this, id, start, end, origin, destination, cost, provider, capacity);
     }
   },
   Railroad(8) {
     @Override
-    public SingleTravel create(String... args) throws ParseException {
-      // Number,DepartureDateTime,ArrivalDateTime,Airline,Origin,Destination,Price,NumSeats
-      return new Railroad(this, args[0], TimeFormat.DATE_TIME.parseString(args[1]),
-          TimeFormat.DATE_TIME.parseString(args[2]), args[4], args[5],
-          Double.parseDouble(args[6]), args[3], Integer.parseInt(args[7]));
+    public SingleTravel create(String id, Date start, Date end, String provider, String origin,
+        String destination, double cost, int capacity) {
+      return new Railroad(this, id, start, end, origin, destination, cost, provider, capacity);
     }
   },
   Coach(8) {
     @Override
-    public SingleTravel create(String... args) throws ParseException {
-      // Number,DepartureDateTime,ArrivalDateTime,Airline,Origin,Destination,Price,NumSeats
-      return new Coach(this, args[0], TimeFormat.DATE_TIME.parseString(args[1]),
-          TimeFormat.DATE_TIME.parseString(args[2]), args[4], args[5],
-          Double.parseDouble(args[6]), args[3], Integer.parseInt(args[7]));
+    public SingleTravel create(String id, Date start, Date end, String provider, String origin,
+        String destination, double cost, int capacity) {
+      return new Coach(this, id, start, end, origin, destination, cost, provider, capacity);
     }
   },
   Ferry(8) {
     @Override
-    public SingleTravel create(String... args) throws ParseException {
-      // Number,DepartureDateTime,ArrivalDateTime,Airline,Origin,Destination,Price,NumSeats
-      return new Ferry(this, args[0], TimeFormat.DATE_TIME.parseString(args[1]),
-          TimeFormat.DATE_TIME.parseString(args[2]), args[4], args[5],
-          Double.parseDouble(args[6]), args[3], Integer.parseInt(args[7]));
+    public SingleTravel create(String id, Date start, Date end, String provider, String origin,
+        String destination, double cost, int capacity) {
+      return new Ferry(this, id, start, end, origin, destination, cost, provider, capacity);
     }
   };
 
@@ -63,14 +56,47 @@ public enum TravelType implements LineParse<SingleTravel> {
     this.numArgs = numArgs;
   }
 
+  @Override
+  public SingleTravel create(CharSequence... args) throws ParseException {
+    // Number,DepartureDateTime,ArrivalDateTime,Airline,Origin,Destination,Price,NumSeats
+    return create(args[0].toString(), TimeFormat.DATE_TIME.parseString(args[1]),
+        TimeFormat.DATE_TIME.parseString(args[2]), args[3].toString(), args[4].toString(),
+        args[5].toString(), Double.parseDouble(args[6].toString()),
+        Integer.parseInt(args[7].toString()));
+  }
+
+  /**
+   * Creates a new travel of this type from its fields.
+   *
+   * @param id
+   *          the id of the travel
+   * @param start
+   *          the departure date and time, to the minute
+   * @param end
+   *          the arrival date and time, to the minute
+   * @param provider
+   *          the provider of the travel
+   * @param origin
+   *          the location the travel departs from
+   * @param destination
+   *          the location the travel arrives at
+   * @param cost
+   *          the cost of the travel
+   * @param capacity
+   *          the amount of seats on the travel
+   * @return a new travel of this type
+   */
+  public abstract SingleTravel create(String id, Date start, Date end, String provider,
+      String origin, String destination, double cost, int capacity);
+
   @Override
   public int getNumArguments() {
     return numArgs;
   }
 
   @Override
-  public String getDelimiter() {
-    return ",";
+  public char getDelimiter() {
+    return ',';
   }
 
   @Override
@@ -1,15 +1,14 @@
 package csc.users;
 
+import csc.interfaces.BookingListener;
 import csc.interfaces.Updatable;
 import csc.travel.Itinerary;
-import csc.travel.SingleTravel;
 import csc.util.TimeFormat;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.Iterator;
 
 /**
  * An abstract class for registered users (in the database).
@@ -48,6 +47,11 @@ public abstract class RegisteredUser extends User implements Updatable<Registere
    * The expiry date of the credit card of this user.
    */
   private Date expiryDate;
+  /**
+   * The object to tell when this user books an itinerary or stops booking it;
+   * null if there is none.
+   */
+  private transient BookingListener<RegisteredUser, Itinerary> listener;
 
   /**
    * Creates a RegisteredUser with the given information.
@@ -114,48 +118,74 @@ public abstract class RegisteredUser extends User implements Updatable<Registere
   }
 
   /**
-   * Books an itinerary for this user.
+   * Books an itinerary for this user, if there is a seat on every travel in it.
+   * Either every travel gets a seat, or none do.
    *
    * @param it
    *          the itinerary to book.
+   * @return True if the itinerary was booked; false if it was already booked
+   *         or a travel in it is full
    */
-  public void bookItinerary(Itinerary it) {
-    if (!hasBooked(it)) {
-      booked.add(it);
-      it.book();
+  public synchronized boolean bookItinerary(Itinerary it) {
+    if (hasBooked(it) || !it.book()) {
+      return false;
     }
+    booked.add(it);
+    if (listener != null) {
+      listener.booked(this, it);
+    }
+    return true;
   }
 
   /**
-   * Removes an itinerary for this user.
+   * Books an itinerary for this user whose seats were already reserved, such
+   * as by a hold.
    *
    * @param it
-   *          the itinerary to remove.
+   *          the itinerary to book.
+   * @return True if the itinerary was booked; false if it was already booked,
+   *         in which case its seats are still reserved
    */
-  public void removeItinerary(Itinerary it) {
+  public synchronized boolean bookReservedItinerary(Itinerary it) {
     if (hasBooked(it)) {
-      booked.remove(it);
-      it.unbook();
+      return false;
+    }
+    booked.add(it);
+    if (listener != null) {
+      listener.booked(this, it);
     }
+    return true;
   }
 
   /**
-   * Removes any itineraries with the specified travel.
+   * Removes an itinerary for this user.
    *
-   * @param st
-   *          the travel to remove
+   * @param it
+   *          the itinerary to remove.
    */
-  public void removeTravel(SingleTravel st) {
-    Iterator<Itinerary> itinIterator = booked.iterator();
-    while (itinIterator.hasNext()) {
-      Itinerary it = itinIterator.next();
-      if (it.containsTravel(st)) {
-        itinIterator.remove();
-        it.unbook();
+  public synchronized void removeItinerary(Itinerary it) {
+    int index = booked.indexOf(it);
+    if (index >= 0) {
+      // the booked itinerary may be a different object equal to it
+      Itinerary removed = booked.remove(index);
+      removed.unbook();
+      if (listener != null) {
+        listener.unbooked(this, removed);
       }
     }
   }
 
+  /**
+   * Sets the object to tell when this user books an itinerary or stops booking
+   * it.
+   *
+   * @param listener
+   *          the listener to set; null removes it
+   */
+  public void setBookingListener(BookingListener<RegisteredUser, Itinerary> listener) {
+    this.listener = listener;
+  }
+
   /**
    * Gets the first names of this user.
    *
@@ -241,6 +271,15 @@ public abstract class RegisteredUser extends User implements Updatable<Registere
     return TimeFormat.DATE.formatDate(expiryDate);
   }
 
+  /**
+   * Gets the expiry date of this user.
+   *
+   * @return a UNIX timestamp of the expiry date
+   */
+  public long getExpiryMillis() {
+    return expiryDate.getTime();
+  }
+
   /**
    * Sets the expiry date of this user.
    *
@@ -258,7 +297,7 @@ public abstract class RegisteredUser extends User implements Updatable<Registere
    *          the itinerary to check
    * @return whether it is booked or not.
    */
-  public boolean hasBooked(Itinerary itin) {
+  public synchronized boolean hasBooked(Itinerary itin) {
     return booked.contains(itin);
   }
 
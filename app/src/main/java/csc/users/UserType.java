@@ -6,6 +6,7 @@ import csc.util.TimeFormat;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -14,26 +15,24 @@ import java.util.List;
 public enum UserType implements LineParse<RegisteredUser> {
   Guest(Privileges.GUEST_LEVEL, -1), Client(Privileges.CLIENT_LEVEL, 6) {
     @Override
-    public RegisteredUser create(String... args) throws ParseException {
-      // LastName,FirstNames,Email,Address,CreditCardNumber,ExpiryDate
-      return new Client(args[2], this, args[1], args[0], args[3], args[4],
-          TimeFormat.DATE.parseString(args[5]));
+    public RegisteredUser create(String email, String firstNames, String lastName,
+        String address, String creditCard, Date expiryDate) {
+      return new Client(email, this, firstNames, lastName, address, creditCard, expiryDate);
     }
   },
   Moderator(Privileges.MOD_LEVEL, 6) {
     @Override
-    public RegisteredUser create(String... args) throws ParseException {
-      // LastName,FirstNames,Email,Address,CreditCardNumber,ExpiryDate
-      return new Moderator(args[2], this, args[1], args[0], args[3], args[4],
-          TimeFormat.DATE.parseString(args[5]));
+    public RegisteredUser create(String email, String firstNames, String lastName,
+        String address, String creditCard, Date expiryDate) {
+      return new Moderator(email, this, firstNames, lastName, address, creditCard, expiryDate);
     }
   },
   Administrator(Privileges.ADMIN_LEVEL, 6) {
     @Override
-    public RegisteredUser create(String... args) throws ParseException {
-      // LastName,FirstNames,Email,Address,CreditCardNumber,ExpiryDate
-      return new Administrator(args[2], this, args[1], args[0], args[3], args[4],
-          TimeFormat.DATE.parseString(args[5]));
+    public RegisteredUser create(String email, String firstNames, String lastName,
+        String address, String creditCard, Date expiryDate) {
+      return new Administrator(email, this, firstNames, lastName, address, creditCard,
+          expiryDate);
     }
 
   };
@@ -66,8 +65,8 @@ public enum UserType implements LineParse<RegisteredUser> {
   }
 
   @Override
-  public String getDelimiter() {
-    return ",";
+  public char getDelimiter() {
+    return ',';
   }
 
   /**
@@ -96,7 +95,34 @@ public enum UserType implements LineParse<RegisteredUser> {
   }
 
   @Override
-  public RegisteredUser create(String... args) throws ParseException {
+  public RegisteredUser create(CharSequence... args) throws ParseException {
+    if (numArgs < 0) { // cannot be read from a file
+      throw new UnsupportedOperationException("This type does not support creation.");
+    }
+    // LastName,FirstNames,Email,Address,CreditCardNumber,ExpiryDate
+    return create(args[2].toString(), args[1].toString(), args[0].toString(),
+        args[3].toString(), args[4].toString(), TimeFormat.DATE.parseString(args[5]));
+  }
+
+  /**
+   * Creates a new user of this type from its fields.
+   *
+   * @param email
+   *          the email of the user
+   * @param firstNames
+   *          the first names of the user
+   * @param lastName
+   *          the last name of the user
+   * @param address
+   *          the address of the user
+   * @param creditCard
+   *          the credit card number of the user
+   * @param expiryDate
+   *          the expiry date of the credit card
+   * @return a new user of this type
+   */
+  public RegisteredUser create(String email, String firstNames, String lastName, String address,
+      String creditCard, Date expiryDate) {
     // default -- if not specified
     throw new UnsupportedOperationException("This type does not support creation.");
   }
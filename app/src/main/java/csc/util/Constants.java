@@ -25,6 +25,53 @@ public final class Constants {
    */
   public static final long MAX_STOPOVER = 6L * 60L * 60L * 1000L;
 
+  /**
+   * The amount of destinations to keep reachability information for when
+   * searching itineraries.
+   */
+  public static final int REACHABILITY_CACHE_SIZE = 64;
+
+  /**
+   * The amount of tasks a parallel itinerary search should be split into at
+   * least, if there are enough paths to split it by.
+   */
+  public static final int PARALLEL_MIN_TASKS = 32;
+
+  /**
+   * The amount of search results to keep cached, for each kind of search.
+   */
+  public static final int RESULT_CACHE_SIZE = 128;
+
+  /**
+   * Indicates how long seats are held for by default, in milliseconds.
+   */
+  public static final long HOLD_TTL = 10L * 60L * 1000L;
+
+  /**
+   * The amount of milliseconds between the times that seat holds can expire
+   * at. Holds expire up to this much after their expiry.
+   */
+  public static final long HOLD_TICK = 1000L;
+
+  /**
+   * The amount of ticks that seat holds are sorted into; holds further ahead
+   * share them with earlier ones.
+   */
+  public static final int HOLD_WHEEL_SIZE = 1024;
+
+  /**
+   * The amount of locks that the keys of a database are spread over, so that
+   * changes to different keys rarely wait for each other. Must be a power of
+   * two.
+   */
+  public static final int LOCK_STRIPES = 64;
+
+  /**
+   * The fewest bytes of a file that each thread parses when importing a file
+   * in parallel.
+   */
+  public static final int IMPORT_CHUNK_SIZE = 1 << 20;
+
   /**
    * Indicates the encoding of files. (UTF-8, US-ASCII, etc.)
    */
@@ -41,6 +88,18 @@ public final class Constants {
    */
   public static final String SAVE_FILE = "passwords.txt";
 
+  /**
+   * The file name to use for the journal of the changes made since the save
+   * file was written.
+   */
+  public static final String JOURNAL_FILE = "journal.dat";
+
+  /**
+   * The fewest bytes the journal grows to before the save file is written
+   * again. It is also written again once the journal is larger than it.
+   */
+  public static final int JOURNAL_COMPACT_SIZE = 64 * 1024;
+
   /**
    * The name of the directory to read files from.
    */
@@ -59,7 +118,7 @@ public final class Constants {
   /**
    * The version of the database.
    */
-  public static final int DATABASE_VERSION = 1;
+  public static final int DATABASE_VERSION = 3;
 
   /**
    * The encryption key to use for internally loading and saving data. Must be
@@ -85,6 +144,12 @@ public final class Constants {
    */
   public static final int CIPHER_IV_LENGTH = 16;
 
+  /**
+   * The length in bits of the authentication tag of the encryption algorithm.
+   * Must be 128, the default length that the saved data was encrypted with.
+   */
+  public static final int CIPHER_TAG_LENGTH = 128;
+
   /**
    * The length of the additional random bytes to add to the encryption
    * password. Recommended value is anything above 8.
@@ -0,0 +1,108 @@
+package csc.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A dictionary of every location name, ignoring case. Each location is given a
+ * small id when it is first seen, counting up from 0, so that locations can be
+ * compared and indexed as ints. Ids are only valid while the application runs,
+ * and must never be saved. Can be used from multiple threads at once.
+ */
+public final class Locations {
+  /**
+   * The id of each location, in lower case.
+   */
+  private static final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+  /**
+   * A shared copy of each spelling of each location.
+   */
+  private static final ConcurrentMap<String, String> spellings = new ConcurrentHashMap<>();
+  /**
+   * The location of each id, in lower case.
+   */
+  private static final List<String> names = new ArrayList<>();
+
+  /**
+   * Locations cannot be instantiated.
+   */
+  private Locations() {}
+
+  /**
+   * Gets the id of a location, ignoring case. A new id is given to a location
+   * that was not seen before, so it should only be used for the locations of
+   * travels; searches use findId, so names that no travel has are not given
+   * one.
+   *
+   * @param location
+   *          the location to get the id of
+   * @return the id of location
+   */
+  public static int getId(String location) {
+    String key = location.toLowerCase();
+    Integer id = ids.get(key);
+    if (id != null) {
+      return id;
+    }
+    synchronized (names) {
+      id = ids.get(key);
+      if (id == null) {
+        id = names.size();
+        names.add(key);
+        ids.put(key, id);
+      }
+      return id;
+    }
+  }
+
+  /**
+   * Gets the id of a location, ignoring case, without giving it one.
+   *
+   * @param location
+   *          the location to get the id of
+   * @return the id of location; -1 if it was never seen
+   */
+  public static int findId(String location) {
+    Integer id = ids.get(location.toLowerCase());
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Gets the location of an id.
+   *
+   * @param id
+   *          the id of the location
+   * @return the location, in lower case
+   */
+  public static String getName(int id) {
+    synchronized (names) {
+      return names.get(id);
+    }
+  }
+
+  /**
+   * Gets the amount of locations seen. Every id is less than this.
+   *
+   * @return the amount of locations
+   */
+  public static int size() {
+    synchronized (names) {
+      return names.size();
+    }
+  }
+
+  /**
+   * Gets a shared copy of a location with the same spelling, so that every
+   * travel with that spelling refers to the same string.
+   *
+   * @param location
+   *          the location to get a copy of
+   * @return a string equal to location
+   */
+  public static String intern(String location) {
+    String ret = spellings.putIfAbsent(location, location);
+    return ret == null ? location : ret;
+  }
+}
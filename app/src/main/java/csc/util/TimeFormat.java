@@ -1,30 +1,67 @@
 package csc.util;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
+import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
 /**
- * A class for formatting dates and times into strings.
+ * A class for formatting dates and times into strings. Formats are parsed and
+ * written by hand instead of with a SimpleDateFormat, so every format can be
+ * used from multiple threads at once. Like a lenient SimpleDateFormat, fields
+ * may have any amount of digits, out of range fields roll over into the next
+ * one, and text after the format is ignored. Dates are in the Gregorian
+ * calendar even before it was adopted in 1582, in the time zone travels are
+ * scheduled in.
  */
 public enum TimeFormat {
-  DATE("yyyy-MM-dd"), TIME("HH:mm"), DATE_TIME("yyyy-MM-dd HH:mm");
+  DATE(true, false), TIME(false, true), DATE_TIME(true, true);
 
   /**
-   * The format to use when parsing times and dates.
+   * The time zone that travels are scheduled in.
    */
-  private final SimpleDateFormat format;
+  private static final TimeZone ZONE = TimeZone.getDefault();
+  /**
+   * The amount of milliseconds in a day, ignoring daylight saving time.
+   */
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+  /**
+   * The amount of milliseconds in a minute.
+   */
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+  /**
+   * The amount of days from 0000-03-01 to 1970-01-01.
+   */
+  private static final long EPOCH_OFFSET = 719468;
+  /**
+   * The amount of days in 400 years, after which the calendar repeats.
+   */
+  private static final long DAYS_PER_ERA = 146097;
+  /**
+   * The most digits a field can have, so that it cannot overflow.
+   */
+  private static final int MAX_DIGITS = 9;
 
   /**
-   * Creates a TimeFormat from the given string.
+   * Whether this format has a date, as yyyy-MM-dd.
+   */
+  private final boolean hasDate;
+  /**
+   * Whether this format has a time, as HH:mm, after the date if there is one.
+   */
+  private final boolean hasTime;
+
+  /**
+   * Creates a TimeFormat of a date, a time, or a date then a time.
    *
-   * @param format
-   *          the string to format dates into
+   * @param hasDate
+   *          whether the format has a date, as yyyy-MM-dd
+   * @param hasTime
+   *          whether the format has a time, as HH:mm
    */
-  private TimeFormat(String format) {
-    this.format = new SimpleDateFormat(format, Locale.getDefault());
+  private TimeFormat(boolean hasDate, boolean hasTime) {
+    this.hasDate = hasDate;
+    this.hasTime = hasTime;
   }
 
   /**
@@ -35,7 +72,64 @@ public enum TimeFormat {
    * @return a string representation of the Date
    */
   public String formatDate(Date date) {
-    return format.format(date);
+    return formatDate(date.getTime());
+  }
+
+  /**
+   * Formats a UNIX timestamp into a string.
+   *
+   * @param millis
+   *          the timestamp to format
+   * @return a string representation of millis
+   */
+  public String formatDate(long millis) {
+    return formatDate(millis, new StringBuilder(16)).toString();
+  }
+
+  /**
+   * Formats a UNIX timestamp to the end of a buffer.
+   *
+   * @param millis
+   *          the timestamp to format
+   * @param out
+   *          the buffer to write to
+   * @return out
+   */
+  public StringBuilder formatDate(long millis, StringBuilder out) {
+    long local = millis + ZONE.getOffset(millis);
+    long day = floorDiv(local, DAY);
+    if (hasDate) {
+      // from days since 0000-03-01, so that leap days are at the end of a year
+      long shifted = day + EPOCH_OFFSET;
+      long era = floorDiv(shifted, DAYS_PER_ERA);
+      long dayOfEra = shifted - era * DAYS_PER_ERA;
+      long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+      long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+      long monthIndex = (5 * dayOfYear + 2) / 153;
+      long month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+      long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+      if (year >= 0 && year < 1000) {
+        appendDigits(out, year / 100);
+        appendDigits(out, year % 100);
+      } else {
+        out.append(year);
+      }
+      out.append('-');
+      appendDigits(out, month);
+      out.append('-');
+      appendDigits(out, dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+    }
+    if (hasDate && hasTime) {
+      out.append(' ');
+    }
+    if (hasTime) {
+      long minutes = (local - day * DAY) / MINUTE;
+      appendDigits(out, minutes / 60);
+      out.append(':');
+      appendDigits(out, minutes % 60);
+    }
+    return out;
   }
 
   /**
@@ -47,8 +141,64 @@ public enum TimeFormat {
    * @throws ParseException
    *           if the string is in the wrong format
    */
-  public Date parseString(String str) throws ParseException {
-    return format.parse(str);
+  public Date parseString(CharSequence str) throws ParseException {
+    return new Date(parseMillis(str));
+  }
+
+  /**
+   * Gets a UNIX timestamp from text, without creating a Date.
+   *
+   * @param text
+   *          the text to parse
+   * @return a UNIX timestamp representing text
+   * @throws ParseException
+   *           if the text is in the wrong format
+   */
+  public long parseMillis(CharSequence text) throws ParseException {
+    Parser parser = new Parser(text);
+    long day = 0;
+    long minutes = 0;
+    if (hasDate) {
+      long year = parser.number();
+      parser.literal('-');
+      long month = parser.number();
+      parser.literal('-');
+      long dayOfMonth = parser.number();
+      day = epochDay(year, month, dayOfMonth);
+    }
+    if (hasDate && hasTime) {
+      parser.literal(' ');
+    }
+    if (hasTime) {
+      long hours = parser.number();
+      parser.literal(':');
+      minutes = hours * 60 + parser.number();
+    }
+    return toUtc(day * DAY + minutes * MINUTE);
+  }
+
+  /**
+   * Gets the day that a UNIX timestamp is on, in the time zone travels are
+   * scheduled in, so that two times are on the same day exactly when their days
+   * are equal.
+   *
+   * @param millis
+   *          the timestamp to check
+   * @return the amount of days from 1970-01-01 to the day of millis
+   */
+  public static int epochDay(long millis) {
+    return (int) floorDiv(millis + ZONE.getOffset(millis), DAY);
+  }
+
+  /**
+   * Gets the last millisecond of the day that a date is on.
+   *
+   * @param date
+   *          the date to check
+   * @return a UNIX timestamp of the end of the day of date
+   */
+  public static long endOfDay(Date date) {
+    return toUtc((epochDay(date.getTime()) + 1) * DAY) - 1;
   }
 
   /**
@@ -64,4 +214,144 @@ public enum TimeFormat {
 
     return String.format("%02d:%02d", hours, minutes - TimeUnit.HOURS.toMinutes(hours));
   }
+
+  /**
+   * Gets the day of a date. Months and days out of range roll over into the
+   * next year or month, or the previous one for 0.
+   *
+   * @param year
+   *          the year of the date
+   * @param month
+   *          the month of the date, from 1 to 12
+   * @param day
+   *          the day of the month of the date, from 1
+   * @return the amount of days from 1970-01-01 to the date
+   */
+  private static long epochDay(long year, long month, long day) {
+    long extraYears = floorDiv(month - 1, 12);
+    year += extraYears;
+    month -= extraYears * 12;
+    // from 0000-03-01, so that leap days are at the end of a year
+    if (month <= 2) {
+      year--;
+    }
+    long era = floorDiv(year, 400);
+    long yearOfEra = year - era * 400;
+    long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * DAYS_PER_ERA + dayOfEra - EPOCH_OFFSET + day - 1;
+  }
+
+  /**
+   * Converts a time in the time zone travels are scheduled in to a UNIX
+   * timestamp. Like a Calendar, a time skipped by daylight saving time is moved
+   * forward, and a time repeated by it is the first one.
+   *
+   * @param local
+   *          the time, in milliseconds since 1970-01-01 00:00 in the zone
+   * @return a UNIX timestamp of local
+   */
+  private static long toUtc(long local) {
+    long guess = local - ZONE.getOffset(local - ZONE.getRawOffset());
+    return local - ZONE.getOffset(guess);
+  }
+
+  /**
+   * Divides, rounding down instead of towards zero.
+   *
+   * @param dividend
+   *          the value to divide
+   * @param divisor
+   *          the positive value to divide by
+   * @return the largest value not more than dividend / divisor
+   */
+  private static long floorDiv(long dividend, long divisor) {
+    long ret = dividend / divisor;
+    return dividend < 0 && ret * divisor != dividend ? ret - 1 : ret;
+  }
+
+  /**
+   * Writes a value from 0 to 99 as two digits.
+   *
+   * @param out
+   *          the buffer to write to
+   * @param value
+   *          the value to write
+   */
+  private static void appendDigits(StringBuilder out, long value) {
+    out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+  }
+
+  /**
+   * Reads the fields of a format from text, in order.
+   */
+  private static class Parser {
+    /**
+     * The text to read.
+     */
+    private final CharSequence text;
+    /**
+     * The index of the next character to read.
+     */
+    private int index = 0;
+
+    /**
+     * Creates a parser at the start of text.
+     *
+     * @param text
+     *          the text to read
+     */
+    private Parser(CharSequence text) {
+      this.text = text;
+    }
+
+    /**
+     * Reads a number, after any whitespace.
+     *
+     * @return the number read
+     * @throws ParseException
+     *           if there is no number, or it is too long
+     */
+    private long number() throws ParseException {
+      while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+        index++;
+      }
+      int start = index;
+      long ret = 0;
+      while (index < text.length() && text.charAt(index) >= '0' && text.charAt(index) <= '9') {
+        if (index - start == MAX_DIGITS) {
+          throw error();
+        }
+        ret = ret * 10 + text.charAt(index++) - '0';
+      }
+      if (index == start) {
+        throw error();
+      }
+      return ret;
+    }
+
+    /**
+     * Reads a character that must be next.
+     *
+     * @param expected
+     *          the character to read
+     * @throws ParseException
+     *           if the next character is a different one
+     */
+    private void literal(char expected) throws ParseException {
+      if (index >= text.length() || text.charAt(index) != expected) {
+        throw error();
+      }
+      index++;
+    }
+
+    /**
+     * Creates an error at the current index.
+     *
+     * @return an exception to throw
+     */
+    private ParseException error() {
+      return new ParseException("Unparseable date: \"" + text + "\"", index);
+    }
+  }
 }
@@ -0,0 +1,61 @@
+package driver;
+
+import static driver.TestFixtures.START;
+import static driver.TestFixtures.flight;
+import static org.junit.Assert.assertEquals;
+
+import csc.database.MainDatabase;
+import csc.database.SearchEngine;
+import csc.travel.Itinerary;
+import csc.travel.SingleTravel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+public class ConnectionScanTests {
+
+  public static final int TIMEOUT = 2000;
+
+  @Test(timeout = TIMEOUT)
+  public void testCheaperLabelVisitedNextLocation() {
+    MainDatabase data = new MainDatabase();
+    SingleTravel toB = flight("CS1", 0, 60, "Scan A", "Scan B", 100);
+    SingleTravel toX = flight("CS2", 0, 10, "Scan A", "Scan X", 10);
+    SingleTravel xToB = flight("CS3", 40, 60, "Scan X", "Scan B", 10);
+    SingleTravel bToX = flight("CS4", 300, 360, "Scan B", "Scan X", 10);
+    // departs too late for a stopover at X after CS2
+    SingleTravel toD = flight("CS5", 400, 460, "Scan X", "Scan D", 10);
+    for (SingleTravel st : Arrays.asList(toB, toX, xToB, bToX, toD)) {
+      data.addTravel(st);
+    }
+
+    // both sequences arrive at B at the same time, but only the dearer one has
+    // not visited X yet
+    ArrayList<Itinerary> found = data.searchItineraries(new Date(START), "Scan A", "Scan D",
+        null, SearchEngine.Connection_Scan);
+
+    assertEquals(1, found.size());
+    assertEquals(Arrays.asList(toB, bToX, toD), new ArrayList<>(found.get(0).getTravels()));
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testEarliestAndCheapest() {
+    MainDatabase data = new MainDatabase();
+    SingleTravel direct = flight("CS6", 0, 120, "Scan E", "Scan F", 100);
+    SingleTravel toG = flight("CS7", 0, 30, "Scan E", "Scan G", 10);
+    SingleTravel gToF = flight("CS8", 90, 240, "Scan G", "Scan F", 10);
+    for (SingleTravel st : Arrays.asList(direct, toG, gToF)) {
+      data.addTravel(st);
+    }
+
+    ArrayList<Itinerary> found = data.searchItineraries(new Date(START), "Scan E", "Scan F",
+        null, SearchEngine.Connection_Scan);
+
+    assertEquals(2, found.size());
+    assertEquals(Arrays.asList(direct), new ArrayList<>(found.get(0).getTravels()));
+    assertEquals(Arrays.asList(toG, gToF), new ArrayList<>(found.get(1).getTravels()));
+  }
+}
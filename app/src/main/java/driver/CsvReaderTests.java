@@ -0,0 +1,121 @@
+package driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import csc.io.CsvReader;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CsvReaderTests {
+
+  public static final int TIMEOUT = 500;
+
+  private static List<List<String>> read(String text) throws IOException {
+    List<List<String>> records = new ArrayList<>();
+    try (CsvReader reader = new CsvReader(new StringReader(text), ',')) {
+      while (reader.next()) {
+        List<String> fields = new ArrayList<>();
+        for (CharSequence field : reader.getFields()) {
+          fields.add(field.toString());
+        }
+        assertEquals(fields.size(), reader.size());
+        records.add(fields);
+      }
+    }
+    return records;
+  }
+
+  private static List<String> record(String... fields) {
+    return Arrays.asList(fields);
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testSameAsSplit() throws Exception {
+    String[] lines = { "490,2016-09-30 22:40,2016-10-01 01:59,Go Airline,New York,Boston,532.00",
+        "a,b,,", "a,,b", ",a", "a,", ",,", "", " a , b ", "a,b,c,d,e,f,g,h,i,j,k,l,m,n,o,p,q,r" };
+    for (String line : lines) {
+      List<List<String>> records = read(line + "\n");
+      assertEquals(1, records.size());
+      assertEquals("Unexpected fields for \"" + line + "\"", Arrays.asList(line.split(",")),
+          records.get(0));
+    }
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testQuoted() throws Exception {
+    assertEquals(Arrays.asList(record("a", "b,c", "d\"e", "")),
+        read("a,\"b,c\",\"d\"\"e\",\"\""));
+    // a quoted field may span lines
+    assertEquals(Arrays.asList(record("1", "two\nlines", "3"), record("4")),
+        read("1,\"two\nlines\",3\n4\n"));
+    // quotes inside a field that did not start with one are kept
+    assertEquals(Arrays.asList(record("a\"b", "c")), read("a\"b,c"));
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testTrailingQuotedEmptyFieldsAreKept() throws Exception {
+    assertEquals(Arrays.asList(record("a", "", "")), read("a,,\"\"\n"));
+    assertEquals(Arrays.asList(record("a", "\"\"")), read("a,\"\"\"\"\"\",,"));
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testLineEndings() throws Exception {
+    List<List<String>> expected =
+        Arrays.asList(record("a", "b"), record("c"), record("d", "e"), record("f"));
+    assertEquals(expected, read("a,b\nc\nd,e\nf"));
+    assertEquals(expected, read("a,b\r\nc\r\nd,e\r\nf\r\n"));
+    assertEquals(expected, read("a,b\rc\rd,e\rf\r"));
+    assertEquals(expected, read("a,b\r\nc\rd,e\nf"));
+    // an empty line is a record of one empty field, like "".split(",")
+    assertEquals(Arrays.asList(record("a"), record(""), record("b")), read("a\r\n\r\nb\r\n"));
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testLongerThanBuffer() throws Exception {
+    StringBuilder text = new StringBuilder();
+    List<List<String>> expected = new ArrayList<>();
+    // the first line ends at the end of the first 8192 characters read, between \r and \n
+    String first = new String(new char[8192 - ",0\r".length()]).replace('\0', 'x');
+    text.append(first).append(",0\r\n");
+    expected.add(record(first, "0"));
+    for (int i = 1; i < 2000; i++) {
+      String field = i % 100 == 0 ? new String(new char[10000]).replace('\0', 'y') : "f" + i;
+      text.append(field).append(",").append(i).append("\r\n");
+      expected.add(record(field, String.valueOf(i)));
+    }
+    assertEquals(expected, read(text.toString()));
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testFieldViews() throws Exception {
+    try (CsvReader reader = new CsvReader(new StringReader("ab,c\nd,ef\n"), ',')) {
+      assertTrue(reader.next());
+      CharSequence first = reader.get(0);
+      assertEquals("ab", first.toString());
+      assertEquals('b', first.charAt(1));
+      assertEquals("b", first.subSequence(1, 2).toString());
+      assertTrue(reader.next());
+      assertEquals("d", reader.get(0).toString());
+      assertEquals("ef", reader.get(1).toString());
+      assertFalse(reader.next());
+    }
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testOtherDelimiter() throws Exception {
+    try (CsvReader reader = new CsvReader(new StringReader("a;b,c;\"d;e\""), ';')) {
+      assertTrue(reader.next());
+      assertEquals(3, reader.size());
+      assertEquals("b,c", reader.get(1).toString());
+      assertEquals("d;e", reader.get(2).toString());
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package driver;
 
+import csc.database.MainDatabase;
 import csc.io.InputOperations;
 import csc.travel.Travel;
 import csc.travel.TravelComparator;
@@ -46,8 +47,10 @@ public class Driver {
    *          price has exactly two decimal places)
    */
   public static void uploadFlightInfo(String path) {
-    // parse the data into a collection, then add it to the travels
-    TestDatabase.getDatabase().addTravels(InputOperations.parseData(path, TravelType.Flight));
+    // parse the data into a collection on every thread, then add it to the travels
+    MainDatabase database = TestDatabase.getDatabase();
+    database.addTravels(
+        InputOperations.parseData(path, TravelType.Flight, database.getExecutor()));
   }
 
   /**
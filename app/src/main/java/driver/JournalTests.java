@@ -0,0 +1,147 @@
+package driver;
+
+import static driver.TestFixtures.client;
+import static driver.TestFixtures.flight;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import csc.database.MainDatabase;
+import csc.io.Journal;
+import csc.travel.Itinerary;
+import csc.travel.SingleTravel;
+import csc.travel.TravelType;
+import csc.users.RegisteredUser;
+import csc.users.User;
+import csc.users.UserType;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class JournalTests {
+
+  public static final byte[] SALT = "0123456789abcdef".getBytes();
+
+  public static final int TIMEOUT = 2000;
+
+  private static File journalFile() throws IOException {
+    File file = File.createTempFile("journal", ".dat");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private static List<String> travels(MainDatabase data) {
+    List<String> travels = new ArrayList<>();
+    for (TravelType tt : TravelType.values()) {
+      for (SingleTravel st : data.getAllTravels(tt)) {
+        travels.add(st + " " + st.getAvailableCapacity());
+      }
+    }
+    return travels;
+  }
+
+  private static List<String> users(MainDatabase data) {
+    List<String> users = new ArrayList<>();
+    for (RegisteredUser ru : data.getAllUsers()) {
+      users.add(ru + " " + ru.getType() + " " + ru.getPassword() + " "
+          + ru.getBookedItineraries().size());
+    }
+    return users;
+  }
+
+  // makes changes of every kind to an empty database, saving twice in between
+  private static MainDatabase changeAndFlush(Journal journal) throws Exception {
+    MainDatabase data = new MainDatabase();
+    journal.start(SALT);
+    data.setListener(journal);
+
+    data.addTravel(flight("1", 0, "London", "Paris", 10));
+    data.addTravel(flight("2", 1, "Paris", "Rome", 10));
+    data.addTravel(flight("3", 2, "Rome", "Berlin", 10));
+    RegisteredUser richard = client("richard@email.com");
+    richard.setPassword("secret");
+    data.addUser(richard);
+    data.addUser(client("jane@email.com"));
+    journal.flush(richard);
+
+    Itinerary it = new Itinerary();
+    it.add(data.getTravel(TravelType.Flight, "1"));
+    it.add(data.getTravel(TravelType.Flight, "2"));
+    richard.bookItinerary(it);
+    RegisteredUser jane = data.getUser("jane@email.com");
+    jane.bookItinerary(new Itinerary(data.getTravel(TravelType.Flight, "3")));
+    jane.removeItinerary(jane.getBookedItineraries().get(0));
+    data.changeIdentifier(data.getTravel(TravelType.Flight, "3"), "4");
+    data.changeEmail(jane, "janet@email.com");
+    data.removeTravel(TravelType.Flight, "4");
+    jane.setType(UserType.Moderator);
+    data.addUser(jane);
+    journal.flush(jane);
+    return data;
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testReplay() throws Exception {
+    File file = journalFile();
+    MainDatabase data = changeAndFlush(new Journal(file));
+
+    MainDatabase again = new MainDatabase();
+    User session = new Journal(file).replay(again, SALT, null);
+
+    assertEquals(travels(data), travels(again));
+    assertEquals(users(data), users(again));
+    assertSame("The last user saved was not restored.", again.getUser("janet@email.com"),
+        session);
+    assertNull(again.getTravel(TravelType.Flight, "4"));
+    assertEquals(1, again.getUser("richard@email.com").getBookedItineraries().size());
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testReplayOtherSaveFile() throws Exception {
+    File file = journalFile();
+    changeAndFlush(new Journal(file));
+
+    MainDatabase again = new MainDatabase();
+    User session = new Journal(file).replay(again, "fedcba9876543210".getBytes(), null);
+
+    assertNull(session);
+    assertEquals(0, again.getAllUsers().size());
+    assertEquals(0, travels(again).size());
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testTornTailIsCut() throws Exception {
+    File file = journalFile();
+    MainDatabase data = changeAndFlush(new Journal(file));
+    long length = file.length();
+
+    // an entry that was only partly written when the application stopped
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(new byte[] { 0, 0, 1, 0, 12, 1, 2, 3 });
+    }
+    MainDatabase again = new MainDatabase();
+    Journal journal = new Journal(file);
+    journal.replay(again, SALT, null);
+
+    assertEquals(travels(data), travels(again));
+    assertEquals(users(data), users(again));
+    assertEquals("The incomplete entry was not cut off.", length, file.length());
+
+    // changes after the cut are appended where it was
+    again.setListener(journal);
+    again.addTravel(flight("5", 3, "Berlin", "Madrid", 10));
+    journal.flush(null);
+
+    MainDatabase last = new MainDatabase();
+    User session = new Journal(file).replay(last, SALT, null);
+    assertNull(session);
+    assertNotNull(last.getTravel(TravelType.Flight, "5"));
+    assertEquals(travels(again), travels(last));
+  }
+}
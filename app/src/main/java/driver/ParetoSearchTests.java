@@ -0,0 +1,64 @@
+package driver;
+
+import static driver.TestFixtures.START;
+import static driver.TestFixtures.flight;
+import static org.junit.Assert.assertEquals;
+
+import csc.database.MainDatabase;
+import csc.travel.Itinerary;
+import csc.travel.SingleTravel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+public class ParetoSearchTests {
+
+  public static final int TIMEOUT = 2000;
+
+  @Test(timeout = TIMEOUT)
+  public void testDominatedLabelVisitingLess() {
+    MainDatabase data = new MainDatabase();
+    SingleTravel toY = flight("PS1", 0, 60, "Pareto A", "Pareto Y", 50);
+    SingleTravel yToB = flight("PS2", 90, 150, "Pareto Y", "Pareto B", 50);
+    SingleTravel toX = flight("PS3", 30, 60, "Pareto A", "Pareto X", 10);
+    SingleTravel xToB = flight("PS4", 90, 150, "Pareto X", "Pareto B", 10);
+    SingleTravel toC = flight("PS5", 240, 300, "Pareto B", "Pareto C", 10);
+    SingleTravel cToX = flight("PS6", 330, 390, "Pareto C", "Pareto X", 10);
+    // departs too late for a stopover at X after PS3
+    SingleTravel toD = flight("PS7", 450, 510, "Pareto X", "Pareto D", 10);
+    for (SingleTravel st : Arrays.asList(toY, yToB, toX, xToB, toC, cToX, toD)) {
+      data.addTravel(st);
+    }
+
+    // the sequence through X to PS5 is cheaper and departs later than the one
+    // through Y, but has already visited X, so only the latter reaches D
+    ArrayList<Itinerary> found = data.searchParetoItineraries(new Date(START), "Pareto A",
+        "Pareto D", null, 0);
+
+    assertEquals(1, found.size());
+    assertEquals(Arrays.asList(toY, yToB, toC, cToX, toD),
+        new ArrayList<>(found.get(0).getTravels()));
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testDominatedLabelIsRemoved() {
+    MainDatabase data = new MainDatabase();
+    SingleTravel direct = flight("PS8", 0, 60, "Pareto E", "Pareto F", 100);
+    SingleTravel toG = flight("PS9", 30, 60, "Pareto E", "Pareto G", 10);
+    SingleTravel gToF = flight("PS10", 90, 120, "Pareto G", "Pareto F", 10);
+    SingleTravel toH = flight("PS11", 240, 300, "Pareto F", "Pareto H", 10);
+    for (SingleTravel st : Arrays.asList(direct, toG, gToF, toH)) {
+      data.addTravel(st);
+    }
+
+    // the sequence through G is cheaper and shorter, so only it is kept
+    ArrayList<Itinerary> found = data.searchParetoItineraries(new Date(START), "Pareto E",
+        "Pareto H", null, 0);
+
+    assertEquals(1, found.size());
+    assertEquals(Arrays.asList(toG, gToF, toH), new ArrayList<>(found.get(0).getTravels()));
+  }
+}
@@ -0,0 +1,216 @@
+package driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import csc.database.MainDatabase;
+import csc.io.SaveOperations;
+import csc.io.SaveReader;
+import csc.io.SaveWriter;
+import csc.travel.Itinerary;
+import csc.travel.SingleTravel;
+import csc.travel.TravelType;
+import csc.users.Administrator;
+import csc.users.RegisteredUser;
+import csc.users.User;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SaveFormatTests {
+
+  // the decrypted body of a save file written by the first release: a flight from London to
+  // Paris and a train from Paris to Rome, booked together by richard, who was logged in, and
+  // an administrator
+  public static final String FIRST_RELEASE =
+      "aced000577190100117269636861726440656d61696c2e636f6d0400000001737200116373632e7472617665"
+      + "6c2e466c696768746c8c02109280fc0f020000787200176373632e74726176656c2e53696e676c6554726176"
+      + "656c44c003e2487004f702000949000863617061636974794900086e756d55736572734c000b64657374696e"
+      + "6174696f6e7400124c6a6176612f6c616e672f537472696e673b4c0003656e647400104c6a6176612f757469"
+      + "6c2f446174653b4c0002696471007e00024c00066f726967696e71007e00024c000870726f76696465727100"
+      + "7e00024c0005737461727471007e00034c0004747970657400174c6373632f74726176656c2f54726176656c"
+      + "547970653b787200116373632e74726176656c2e54726176656c2e43065897ef6bd3020001440004636f7374"
+      + "78704080a7eb851eb852000000020000000174000550617269737372000e6a6176612e7574696c2e44617465"
+      + "686a81014b59741903000078707708000001577c330160787400033439307400064c6f6e646f6e74000a476f"
+      + "204169726c696e657371007e00087708000001577bd2e000787e7200156373632e74726176656c2e54726176"
+      + "656c5479706500000000000000001200007872000e6a6176612e6c616e672e456e756d000000000000000012"
+      + "00007870740006466c69676874770400000001737200136373632e74726176656c2e5261696c726f61646c8c"
+      + "02109280fc0f0200007871007e00014047c000000000000000012c00000001740004526f6d657371007e0008"
+      + "7708000001577d1c770078740002523771007e00077400045261696c7371007e00087708000001577c77ab80"
+      + "787e71007e000e7400085261696c726f6164770c000000000000000000000002737200176373632e75736572"
+      + "732e41646d696e6973747261746f72d9174c81b2f9f9de020000787200186373632e75736572732e52656769"
+      + "73746572656455736572ddc8710edea879b70200064c00076164647265737371007e00024c000a6372656469"
+      + "744361726471007e00024c000a6578706972794461746571007e00034c000a66697273744e616d657371007e"
+      + "00024c00086c6173744e616d6571007e00024c000870617373776f726471007e00027872000e6373632e7573"
+      + "6572732e55736572ffa86787d42586350200024c0002696471007e00024c000970726976696c656765740014"
+      + "4c6373632f75736572732f55736572547970653b787074000f61646d696e40656d61696c2e636f6d7e720012"
+      + "6373632e75736572732e557365725479706500000000000000001200007871007e000f74000d41646d696e69"
+      + "73747261746f7274000931204d61696e205374740010313131313232323233333333343434347371007e0008"
+      + "77080000015ed6173a00787400034164617400034d696e740000770400000000737200106373632e75736572"
+      + "732e436c69656e7422205559e5a14af00200007871007e001c7400117269636861726440656d61696c2e636f"
+      + "6d7e71007e0021740006436c69656e747400113231204669727374204c616e65205761797400103939393938"
+      + "38383837373737363636367371007e000877080000015ed6173a007874000752696368617264740003526f65"
+      + "740006736563726574771300000001000000020000033439300100025237";
+
+  public static final long MINUTE = 60L * 1000L;
+  public static final long HOUR = 60 * MINUTE;
+  public static final long DAY = 1475193600000L;
+
+  public static final int TIMEOUT = 500;
+
+  private static byte[] hex(String value) {
+    byte[] bytes = new byte[value.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(value.substring(i * 2, i * 2 + 2), 16);
+    }
+    return bytes;
+  }
+
+  private static List<SingleTravel> travels(MainDatabase data) {
+    List<SingleTravel> travels = new ArrayList<>();
+    for (TravelType tt : TravelType.values()) {
+      travels.addAll(data.getAllTravels(tt));
+    }
+    return travels;
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testReadFirstRelease() throws Exception {
+    MainDatabase data = new MainDatabase();
+    User session =
+        SaveOperations.deserializeObjects(data, new ByteArrayInputStream(hex(FIRST_RELEASE)));
+
+    SingleTravel flight = data.getTravel(TravelType.Flight, "490");
+    SingleTravel train = data.getTravel(TravelType.Railroad, "R7");
+    assertNotNull("The flight was not read.", flight);
+    assertNotNull("The train was not read.", train);
+    assertEquals(DAY + 16 * HOUR, flight.getStartMillis());
+    assertEquals(DAY + 17 * HOUR + 45 * MINUTE, flight.getEndMillis());
+    assertEquals("London", flight.getOrigin());
+    assertEquals("Paris", flight.getDestination());
+    assertEquals("Go Airline", flight.getProvider());
+    assertEquals(532.99, flight.getCost(), 0);
+    assertEquals(DAY + 19 * HOUR, train.getStartMillis());
+    assertEquals(DAY + 22 * HOUR, train.getEndMillis());
+    assertEquals("Rome", train.getDestination());
+    assertEquals(47.5, train.getCost(), 0);
+
+    RegisteredUser richard = data.getUser("richard@email.com");
+    assertNotNull("The client was not read.", richard);
+    assertSame("The logged in user was not restored.", richard, session);
+    assertEquals("secret", richard.getPassword());
+    assertEquals("Richard Roe", richard.getName());
+    assertEquals("21 First Lane Way", richard.getAddress());
+    assertEquals("9999888877776666", richard.getCreditCard());
+    assertEquals(1506830400000L, richard.getExpiryMillis());
+    assertEquals(1, richard.getBookedItineraries().size());
+    Itinerary it = richard.getBookedItineraries().get(0);
+    assertEquals(2, it.size());
+    assertEquals("A seat should be booked on the flight.", 1, flight.getAvailableCapacity());
+    assertEquals("A seat should be booked on the train.", 299, train.getAvailableCapacity());
+
+    assertEquals(Administrator.class, data.getUser("admin@email.com").getClass());
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testResaveFirstRelease() throws Exception {
+    MainDatabase first = new MainDatabase();
+    User session =
+        SaveOperations.deserializeObjects(first, new ByteArrayInputStream(hex(FIRST_RELEASE)));
+
+    MainDatabase again = new MainDatabase();
+    User restored =
+        SaveOperations.readRecords(again, SaveOperations.writeRecords(first, session));
+
+    assertEquals(travels(first), travels(again));
+    assertEquals(new ArrayList<>(first.getAllUsers()), new ArrayList<>(again.getAllUsers()));
+    assertSame(again.getUser("richard@email.com"), restored);
+    assertEquals(1, again.getTravel(TravelType.Flight, "490").getAvailableCapacity());
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testVarLongZigzag() throws Exception {
+    long[] values = { 0, 1, -1, 63, -64, 64, -65, 24586666, -24586666, Long.MAX_VALUE,
+        Long.MIN_VALUE };
+    // small values take a byte whatever their sign; the largest take 10
+    int[] sizes = { 1, 1, 1, 1, 1, 2, 2, 4, 4, 10, 10 };
+    for (int i = 0; i < values.length; i++) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      new SaveWriter(bytes).writeVarLong(values[i]);
+      assertEquals("Unexpected size for " + values[i], sizes[i], bytes.size());
+      SaveReader in = new SaveReader(new ByteArrayInputStream(bytes.toByteArray()));
+      assertEquals(values[i], in.readVarLong());
+    }
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testVarInt() throws Exception {
+    int[] values = { 0, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1 };
+    int[] sizes = { 1, 1, 2, 2, 3, 5, 5 };
+    for (int i = 0; i < values.length; i++) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      new SaveWriter(bytes).writeVarInt(values[i]);
+      assertEquals("Unexpected size for " + values[i], sizes[i], bytes.size());
+      SaveReader in = new SaveReader(new ByteArrayInputStream(bytes.toByteArray()));
+      assertEquals(values[i], in.readVarInt());
+    }
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testCost() throws Exception {
+    double[] costs = { 0, 532.99, 0.1, 47.5, -12.25, 1e13, 1.0 / 3, 1e300, -0.0, Double.NaN,
+        Double.POSITIVE_INFINITY };
+    // whole cents take a few bytes; any others take 9
+    int[] sizes = { 1, 3, 1, 3, 2, 8, 9, 9, 9, 9, 9 };
+    for (int i = 0; i < costs.length; i++) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      new SaveWriter(bytes).writeCost(costs[i]);
+      assertEquals("Unexpected size for " + costs[i], sizes[i], bytes.size());
+      SaveReader in = new SaveReader(new ByteArrayInputStream(bytes.toByteArray()));
+      assertEquals(Double.doubleToLongBits(costs[i]), Double.doubleToLongBits(in.readCost()));
+    }
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testSharedStrings() throws Exception {
+    String[] values = { "Toronto", "Ottawa", "Toronto", "", "Montr\u00e9al", "Ottawa", "" };
+    // 0, the length and the bytes of each new string; the index of each repeated one
+    int[] sizes = { 2 + 7, 2 + 6, 1, 2, 2 + 9, 1, 1 };
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    SaveWriter out = new SaveWriter(bytes);
+    for (int i = 0; i < values.length; i++) {
+      int before = bytes.size();
+      out.writeSharedString(values[i]);
+      assertEquals("Unexpected size for " + values[i], sizes[i], bytes.size() - before);
+    }
+
+    SaveReader in = new SaveReader(new ByteArrayInputStream(bytes.toByteArray()));
+    for (String value : values) {
+      assertEquals(value, in.readSharedString());
+    }
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testUnknownSharedString() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    SaveWriter out = new SaveWriter(bytes);
+    out.writeSharedString("Toronto");
+    out.writeVarInt(2); // only one string was written
+
+    SaveReader in = new SaveReader(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals("Toronto", in.readSharedString());
+    try {
+      in.readSharedString();
+      fail("An unknown string should not be read.");
+    } catch (IOException expected) {
+      // the save is corrupted
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package driver;
+
+import static driver.TestFixtures.client;
+import static driver.TestFixtures.flight;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import csc.travel.Itinerary;
+import csc.travel.SingleTravel;
+import csc.users.RegisteredUser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SeatInventoryTests {
+
+  public static final int THREADS = 8;
+  public static final int ATTEMPTS = 2000;
+
+  public static final int TIMEOUT = 20000;
+
+  private static String email(int thread, int attempt) {
+    return "user" + thread + "." + attempt + "@email.com";
+  }
+
+  // runs a task on many threads at once, and counts how often each kind succeeded
+  private static int[] race(final BookingTask task) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<int[]>> results = new ArrayList<>();
+    try {
+      for (int t = 0; t < THREADS; t++) {
+        final int thread = t;
+        results.add(executor.submit(new Callable<int[]>() {
+          @Override
+          public int[] call() throws Exception {
+            start.await();
+            int[] counts = new int[task.kinds()];
+            for (int i = 0; i < ATTEMPTS; i++) {
+              int kind = (thread + i) % counts.length;
+              if (task.attempt(kind, thread, i)) {
+                counts[kind]++;
+              }
+            }
+            return counts;
+          }
+        }));
+      }
+      start.countDown();
+      int[] total = new int[task.kinds()];
+      for (Future<int[]> result : results) {
+        int[] counts = result.get();
+        for (int i = 0; i < total.length; i++) {
+          total[i] += counts[i];
+        }
+      }
+      return total;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private interface BookingTask {
+    int kinds();
+
+    boolean attempt(int kind, int thread, int attempt);
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testNoOversell() throws Exception {
+    final SingleTravel leg = flight("1", 0, "London", "Paris", 37);
+
+    int[] booked = race(new BookingTask() {
+      @Override
+      public int kinds() {
+        return 1;
+      }
+
+      @Override
+      public boolean attempt(int kind, int thread, int attempt) {
+        return client(email(thread, attempt)).bookItinerary(new Itinerary(leg));
+      }
+    });
+
+    assertEquals("More seats were booked than the capacity.", 37, booked[0]);
+    assertEquals(0, leg.getAvailableCapacity());
+    assertTrue(leg.isFull());
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testMultiLegAllOrNothing() throws Exception {
+    final SingleTravel first = flight("1", 0, "London", "Paris", 300);
+    final SingleTravel second = flight("2", 1, "Paris", "Rome", 50);
+    final SingleTravel third = flight("3", 2, "Rome", "Athens", 200);
+
+    // all three legs, only the first two, and only the last two; built before
+    // any leg is full, since a full travel cannot be added to an itinerary
+    final Itinerary[] itineraries = { new Itinerary(first), new Itinerary(first),
+        new Itinerary(second) };
+    itineraries[0].add(second);
+    itineraries[0].add(third);
+    itineraries[1].add(second);
+    itineraries[2].add(third);
+
+    int[] booked = race(new BookingTask() {
+      @Override
+      public int kinds() {
+        return itineraries.length;
+      }
+
+      @Override
+      public boolean attempt(int kind, int thread, int attempt) {
+        return client(email(thread, attempt)).bookItinerary(itineraries[kind]);
+      }
+    });
+
+    int firstSeats = booked[0] + booked[1];
+    int secondSeats = booked[0] + booked[1] + booked[2];
+    int thirdSeats = booked[0] + booked[2];
+    assertEquals("The shared leg was not filled exactly.", 50, secondSeats);
+    // a failed booking must not have kept a seat on any other leg
+    assertEquals(first.getCapacity() - firstSeats, first.getAvailableCapacity());
+    assertEquals(0, second.getAvailableCapacity());
+    assertEquals(third.getCapacity() - thirdSeats, third.getAvailableCapacity());
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testBookAndCancel() throws Exception {
+    final SingleTravel leg = flight("1", 0, "London", "Paris", 10);
+
+    race(new BookingTask() {
+      @Override
+      public int kinds() {
+        return 1;
+      }
+
+      @Override
+      public boolean attempt(int kind, int thread, int attempt) {
+        RegisteredUser user = client(email(thread, attempt));
+        Itinerary it = new Itinerary(leg);
+        if (user.bookItinerary(it)) {
+          assertTrue(leg.getAvailableCapacity() >= 0);
+          user.removeItinerary(it);
+          // cancelling twice must not release a seat that was not booked
+          user.removeItinerary(it);
+        }
+        return true;
+      }
+    });
+
+    assertEquals(10, leg.getAvailableCapacity());
+    leg.removeUser();
+    assertEquals("An empty travel released a seat.", 10, leg.getAvailableCapacity());
+  }
+}
@@ -0,0 +1,89 @@
+package driver;
+
+import csc.travel.Flight;
+import csc.travel.SingleTravel;
+import csc.travel.TravelType;
+import csc.users.Client;
+import csc.users.RegisteredUser;
+import csc.users.UserType;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Used for making the travels and users of the back-end tests.
+ */
+public class TestFixtures {
+
+  /**
+   * One minute, in milliseconds.
+   */
+  public static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+  /**
+   * One hour, in milliseconds.
+   */
+  public static final long HOUR = TimeUnit.HOURS.toMillis(1);
+  /**
+   * The start of the day the travels depart on, in milliseconds.
+   */
+  public static final long START = 1475193600000L;
+
+  /**
+   * Creates a one hour flight, departing two hours after the flight of the
+   * leg before it.
+   *
+   * @param id
+   *          the id of the flight
+   * @param leg
+   *          the amount of flights departing before it
+   * @param origin
+   *          the location to depart from
+   * @param destination
+   *          the location to arrive at
+   * @param capacity
+   *          the amount of seats on the flight
+   * @return a new flight
+   */
+  public static SingleTravel flight(String id, int leg, String origin, String destination,
+      int capacity) {
+    return new Flight(TravelType.Flight, id, new Date(START + leg * 2 * HOUR),
+        new Date(START + (leg * 2 + 1) * HOUR), origin, destination, 100, "Go Airline",
+        capacity);
+  }
+
+  /**
+   * Creates a flight with ten seats, departing and arriving at the given
+   * minutes of the day.
+   *
+   * @param id
+   *          the id of the flight
+   * @param departure
+   *          the minutes after START to depart at
+   * @param arrival
+   *          the minutes after START to arrive at
+   * @param origin
+   *          the location to depart from
+   * @param destination
+   *          the location to arrive at
+   * @param cost
+   *          the cost of the flight
+   * @return a new flight
+   */
+  public static SingleTravel flight(String id, long departure, long arrival, String origin,
+      String destination, double cost) {
+    return new Flight(TravelType.Flight, id, new Date(START + departure * MINUTE),
+        new Date(START + arrival * MINUTE), origin, destination, cost, "Go Airline", 10);
+  }
+
+  /**
+   * Creates a client.
+   *
+   * @param email
+   *          the email of the client
+   * @return a new client
+   */
+  public static RegisteredUser client(String email) {
+    return new Client(email, UserType.Client, "First", "Last", "1 Street", "9999888877776666",
+        new Date(START));
+  }
+}
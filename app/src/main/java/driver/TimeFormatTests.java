@@ -0,0 +1,103 @@
+package driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import csc.util.TimeFormat;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.concurrent.TimeUnit;
+
+public class TimeFormatTests {
+
+  public static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+  public static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+  public static final int TIMEOUT = 2000;
+
+  @Test(timeout = TIMEOUT)
+  public void testSameAsSimpleDateFormat() throws Exception {
+    SimpleDateFormat dateTime = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+    SimpleDateFormat date = new SimpleDateFormat("yyyy-MM-dd");
+    // from 1600 to 2200, at a different time of day each time
+    long first = dateTime.parse("1600-01-01 00:00").getTime();
+    long last = dateTime.parse("2200-01-01 00:00").getTime();
+    for (long millis = first; millis < last; millis += 7 * DAY + 37 * MINUTE) {
+      String expected = dateTime.format(millis);
+      assertEquals(expected, TimeFormat.DATE_TIME.formatDate(millis));
+      assertEquals(date.format(millis), TimeFormat.DATE.formatDate(millis));
+      assertEquals(expected.substring(11), TimeFormat.TIME.formatDate(millis));
+      assertEquals(expected, dateTime.parse(expected).getTime(),
+          TimeFormat.DATE_TIME.parseMillis(expected));
+    }
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testLeapDays() throws Exception {
+    String[] dates = { "2016-02-29", "2000-02-29", "1600-02-29", "1900-03-01", "2100-03-01" };
+    for (String day : dates) {
+      assertEquals(day, TimeFormat.DATE.formatDate(TimeFormat.DATE.parseMillis(day)));
+    }
+    // 1900 and 2100 are not leap years, so their 29th of February rolls over
+    assertEquals("1900-03-01",
+        TimeFormat.DATE.formatDate(TimeFormat.DATE.parseMillis("1900-02-29")));
+    assertEquals("2100-03-01",
+        TimeFormat.DATE.formatDate(TimeFormat.DATE.parseMillis("2100-02-29")));
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testFieldsRollOver() throws Exception {
+    assertEquals("2017-01-01 00:00", roundTrip("2016-13-01 00:00"));
+    assertEquals("2016-03-01 00:00", roundTrip("2016-02-30 00:00"));
+    assertEquals("2016-09-30 00:00", roundTrip("2016-10-00 00:00"));
+    assertEquals("2016-10-01 01:10", roundTrip("2016-09-30 25:10"));
+    assertEquals("2016-09-30 23:00", roundTrip("2016-09-30 22:60"));
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testLenientText() throws Exception {
+    // any amount of digits, whitespace before a number, and text after the format
+    assertEquals("2016-09-03 04:05", roundTrip("2016-9-3 4:5"));
+    assertEquals("2016-09-30 22:40", roundTrip("2016-09-30  22:40"));
+    assertEquals("2016-09-30 22:40", roundTrip("2016-09-30 22:40:59 and more"));
+    assertEquals("0999-01-01", TimeFormat.DATE.formatDate(TimeFormat.DATE.parseMillis("999-1-1")));
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testWrongFormat() {
+    String[] wrong = { "", "2016", "2016/09/30 22:40", "2016-09-30T22:40", "2016-09-30 22",
+        "2016-09-30 :40", "x2016-09-30 22:40", "1234567890-01-01 00:00" };
+    for (String text : wrong) {
+      try {
+        TimeFormat.DATE_TIME.parseMillis(text);
+        fail("\"" + text + "\" should not be parsed.");
+      } catch (ParseException expected) {
+        // not a date and time
+      }
+    }
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testEpochDay() throws Exception {
+    long millis = TimeFormat.DATE_TIME.parseMillis("2016-09-30 23:59");
+    long next = TimeFormat.DATE_TIME.parseMillis("2016-10-01 00:00");
+    assertEquals(TimeFormat.epochDay(millis) + 1, TimeFormat.epochDay(next));
+    assertEquals(TimeFormat.epochDay(millis),
+        TimeFormat.epochDay(TimeFormat.DATE.parseMillis("2016-09-30")));
+    assertEquals(next - 1, TimeFormat.endOfDay(TimeFormat.DATE.parseString("2016-09-30")));
+  }
+
+  @Test(timeout = TIMEOUT)
+  public void testFormatMillis() {
+    assertEquals("03:19", TimeFormat.formatMillis(3 * 60 * MINUTE + 19 * MINUTE));
+    assertEquals("00:00", TimeFormat.formatMillis(0));
+    assertEquals("30:05", TimeFormat.formatMillis(30 * 60 * MINUTE + 5 * MINUTE + 59000));
+  }
+
+  private static String roundTrip(String text) throws ParseException {
+    return TimeFormat.DATE_TIME.formatDate(TimeFormat.DATE_TIME.parseMillis(text));
+  }
+}